@@ -0,0 +1,42 @@
+#!/bin/bash
+# Build an AppCDS archive for the headless CLI (soltrchess.SoltrChessCLI)
+# and compare its startup time with and without the archive.
+#
+# Usage: ./appcds.sh [classes-dir]
+#   classes-dir  compiled classes, default out/production/SolitaireChess
+#                (IntelliJ's output); JavaFX is not needed
+#
+# Uses $JAVA_HOME/bin/java if JAVA_HOME is set, otherwise java on the PATH.
+# Run the CLI with the archive afterwards with:
+#   java -XX:SharedArchiveFile=out/appcds/cli.jsa -p out/appcds/solitairechess.jar \
+#        -m SolitaireChess/soltrchess.SoltrChessCLI ...
+set -e
+
+CLASSES=${1:-out/production/SolitaireChess}
+BIN=${JAVA_HOME:+$JAVA_HOME/bin/}
+OUT=out/appcds
+RUNS=10
+mkdir -p $OUT
+
+# CDS only archives classes loaded from jar files, not directories
+${BIN}jar --create --file $OUT/solitairechess.jar -C "$CLASSES" .
+
+APP="-Dsoltrchess.cache=$OUT/solutions.cache -p $OUT/solitairechess.jar -m SolitaireChess/soltrchess.SoltrChessCLI solve data/game59.txt"
+
+# training run: every class the CLI loads goes into the archive
+${BIN}java -XX:ArchiveClassesAtExit=$OUT/cli.jsa $APP > /dev/null
+
+# average wall clock time of RUNS runs, in milliseconds
+time_runs() {
+    local start end
+    start=$(date +%s%N)
+    for ((i = 0; i < RUNS; i++)); do
+        ${BIN}java "$@" $APP > /dev/null
+    done
+    end=$(date +%s%N)
+    echo $(( (end - start) / RUNS / 1000000 ))
+}
+
+echo "JDK default CDS:            $(time_runs) ms"
+echo "AppCDS archive:             $(time_runs -XX:SharedArchiveFile=$OUT/cli.jsa) ms"
+echo "AppCDS + C1 only:           $(time_runs -XX:SharedArchiveFile=$OUT/cli.jsa -XX:TieredStopAtLevel=1) ms"
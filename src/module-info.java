@@ -1,4 +1,7 @@
 module SolitaireChess {
-    requires transitive javafx.controls;
-    exports soltrchess.gui;
+    requires static javafx.controls;
+    requires jdk.httpserver;
+    requires java.net.http;
+    requires jdk.jfr;
+    exports soltrchess.gui to javafx.graphics;
 }
\ No newline at end of file
@@ -2,8 +2,12 @@ package soltrchess;
 
 import soltrchess.gui.SoltrChessGUI;
 import soltrchess.ptui.SoltrChessPTUI;
+import soltrchess.ptui.SoltrChessScript;
 import javafx.application.Application;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * Here is a class capable of starting up both the GUI and PTUI
  * versions of the game. You are welcome to use it, but you don't
@@ -14,25 +18,32 @@ import javafx.application.Application;
 public class SoltrChess {
     public static final int CMD_LINE_ERROR = 1;
 
-    enum UIMode { huh, gui, ptui }
+    enum UIMode { huh, gui, ptui, script }
 
     private static void usage() {
         System.err.println(
-                "Usage: java SoltrChess ( gui | ptui ) config-file" );
+                "Usage: java SoltrChess ( gui | ptui ) config-file\n" +
+                "       java SoltrChess script config-file [command-file]" );
         System.exit( CMD_LINE_ERROR );
     }
 
     /**
      * Start up a Chess Solitaire game in a terminal window or GUI.
      * @param args string array containing [0] "solitarechess.gui" or "solitarechess.ptui";
-     *             [1] the game's configuration file
+     *             [1] the game's configuration file; in script mode,
+     *             [2] an optional file of commands to run instead of stdin
+     * @throws IOException if a script's commands cannot be read
      */
-    public static void main( String[] args ) {
+    public static void main( String[] args ) throws IOException {
         UIMode mode = UIMode.huh;
-        System.out.println( "Welcome to Solitaire Chess!" );
         String fileName = null;
+        // only a script takes a command file
+        if ( args.length == 3 && !args[ 0 ].equals( UIMode.script.name() ) ) {
+            usage();
+        }
         switch ( args.length ) {
             case 2:
+            case 3:
                 fileName = args[ 1 ];
                 try {
                     mode = UIMode.valueOf( args[ 0 ] );
@@ -44,6 +55,10 @@ public class SoltrChess {
             default:
                 usage();
         }
+        // a script's output is meant for programs, so it gets no greeting
+        if ( mode != UIMode.script ) {
+            System.out.println( "Welcome to Solitaire Chess!" );
+        }
 
         // Informing a JavaFX application of other objects is a bit
         // tricky. So we are letting it start the solitarechess.model. To be
@@ -58,12 +73,23 @@ public class SoltrChess {
         //
         switch( mode ) {
             case gui:
+                // JavaFX is optional so the text-only modes start without it
+                try {
+                    Class.forName( "javafx.application.Application" );
+                }
+                catch( ClassNotFoundException noJavaFX ) {
+                    System.err.println( "The GUI needs JavaFX; run with --add-modules javafx.controls" );
+                    System.exit( CMD_LINE_ERROR );
+                }
                 Application.launch( SoltrChessGUI.class, fileName );
                 break;
             case ptui:
                 SoltrChessPTUI ui = new SoltrChessPTUI( fileName );
                 ui.run();
                 break;
+            case script:
+                SoltrChessScript.main( Arrays.copyOfRange( args, 1, args.length ) );
+                break;
             default:
                 usage();
         }
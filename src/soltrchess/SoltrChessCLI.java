@@ -0,0 +1,85 @@
+package soltrchess;
+
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.engine.FewestPieces;
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+import soltrchess.ptui.SoltrChessPTUI;
+import soltrchess.ptui.SoltrChessScript;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Starts the text-only versions of the game. Unlike SoltrChess, nothing
+ * here refers to JavaFX, so it starts without JavaFX on the module path
+ * and without loading any of its classes.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SoltrChessCLI {
+    /**
+     * Print how to run the CLI and exit.
+     */
+    private static void usage() {
+        System.err.println("Usage: java SoltrChessCLI ptui game-file");
+        System.err.println("       java SoltrChessCLI script game-file [command-file]");
+        System.err.println("       java SoltrChessCLI solve game-file");
+        System.exit(SoltrChess.CMD_LINE_ERROR);
+    }
+
+    /**
+     * Start the PTUI, run a script, or print a solution.
+     *
+     * @param args [0] "ptui", "script" or "solve", [1] the game file,
+     *             [2] for a script, an optional file of commands
+     * @throws IOException if a script's commands cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        switch (args[0]) {
+            case "ptui" -> {
+                if (args.length != 2) {
+                    usage();
+                }
+                System.out.println("Welcome to Solitaire Chess!");
+                new SoltrChessPTUI(args[1]).run();
+            }
+            case "script" -> SoltrChessScript.main(Arrays.copyOfRange(args, 1, args.length));
+            case "solve" -> {
+                if (args.length != 2) {
+                    usage();
+                }
+                SoltrChessModel board;
+                try {
+                    board = new SoltrChessModel(args[1]);
+                } catch (FileNotFoundException e) {
+                    System.err.println(args[1] + ": cannot be read");
+                    System.exit(SoltrChess.CMD_LINE_ERROR);
+                    return;
+                }
+                if (board.getGameStatus() == SoltrChessModel.Status.INVALID_FILE) {
+                    System.err.println(args[1] + ": invalid file");
+                    System.exit(SoltrChess.CMD_LINE_ERROR);
+                }
+                int[] solution = SoltrChessSolver.getDefault().solve(board);
+                if (solution == null) {
+                    FewestPieces.Result best = FewestPieces.solve(PackedBoard.pack(board));
+                    System.out.println("No solution; the fewest pieces that can be left is " + best.pieces);
+                    for (int move : best.moves) {
+                        System.out.println(Move.toString(move));
+                    }
+                } else {
+                    for (int move : solution) {
+                        System.out.println(Move.toString(move));
+                    }
+                }
+            }
+            default -> usage();
+        }
+    }
+}
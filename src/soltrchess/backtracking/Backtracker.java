@@ -7,6 +7,8 @@ package soltrchess.backtracking;
  * implement.
  */
 
+import soltrchess.jfr.SearchProgress;
+
 import java.util.*;
 
 /**
@@ -26,12 +28,31 @@ public class Backtracker {
      * @return A solution config, or null if no solution
      */
     public Optional<Configuration> solve(Configuration config) {
+        SearchProgress progress = SearchProgress.begin("Backtracker", puzzle(config));
+        Optional<Configuration> sol = Optional.empty();
+        try {
+            sol = solve(config, progress);
+        } finally {
+            progress.end(sol.isPresent() ? 0 : -1);
+        }
+        return sol;
+    }
+
+    /**
+     * Try find a solution, counting the configurations searched.
+     *
+     * @param config A valid configuration
+     * @param progress the search's progress, for the flight recorder
+     * @return A solution config, or null if no solution
+     */
+    private Optional<Configuration> solve(Configuration config, SearchProgress progress) {
+        progress.countNode();
         if (config.isGoal()) {
             return Optional.of(config);
         } else {
             for (Configuration child : config.getSuccessors()) {
                 if (child.isValid()) {
-                    Optional<Configuration> sol = solve(child);
+                    Optional<Configuration> sol = solve(child, progress);
                     if (sol.isPresent()) {
                         return sol;
                     }
@@ -49,24 +70,90 @@ public class Backtracker {
      *         If there are none, return null.
      */
     public List<Configuration> solveWithPath(Configuration current) {
+        List<Configuration> path = new ArrayList<>();
+        SearchProgress progress = SearchProgress.begin("Backtracker", puzzle(current));
+        boolean solved = false;
+        try {
+            solved = solveWithPath(current, path, progress);
+        } finally {
+            progress.end(solved ? path.size() - 1 : -1);
+        }
+        return solved ? path : null;
+    }
+
+    /**
+     * Find a goal configuration, keeping the configurations leading to it in
+     * a single list that is added to on the way down and taken from when
+     * backtracking, so no list is copied.
+     *
+     * @param current the current configuration
+     * @param path the configurations leading to the current one
+     * @param progress the search's progress, for the flight recorder
+     * @return whether or not a goal was found; if so, path ends with it
+     */
+    private boolean solveWithPath(Configuration current, List<Configuration> path, SearchProgress progress) {
+        progress.countNode();
+        path.add(current);
         if (current.isGoal()) {
-            return new ArrayList<>(Collections.singletonList(current));
-        } else {
-            for (Configuration child : current.getSuccessors()) {
-                if (child.isValid()) {
-                    List<Configuration> next = solveWithPath(child);
-                    if (next != null) {
-                        List<Configuration> config = new ArrayList<>();
-                        config.add(current);
-                        config.addAll(next);
-                        return config;
-                    }
+            return true;
+        }
+        for (Configuration child : current.getSuccessors()) {
+            if (child.isValid() && solveWithPath(child, path, progress)) {
+                return true;
+            }
+        }
+        // implicit solitarechess.backtracking happens here
+        path.remove(path.size() - 1);
+        return false;
+    }
 
-                }
+    /**
+     * Count every goal configuration reachable from a given configuration.
+     * Goals reached along different paths are counted separately.
+     *
+     * @param config the starting configuration
+     * @return the number of solutions
+     */
+    public long countSolutions(Configuration config) {
+        SearchProgress progress = SearchProgress.begin("Backtracker", puzzle(config));
+        long count = 0;
+        try {
+            count = countSolutions(config, progress);
+        } finally {
+            progress.end(count > 0 ? 0 : -1);
+        }
+        return count;
+    }
+
+    /**
+     * Count every goal configuration, counting the configurations searched.
+     *
+     * @param config the current configuration
+     * @param progress the search's progress, for the flight recorder
+     * @return the number of solutions
+     */
+    private long countSolutions(Configuration config, SearchProgress progress) {
+        progress.countNode();
+        if (config.isGoal()) {
+            return 1;
+        }
+        long count = 0;
+        for (Configuration child : config.getSuccessors()) {
+            if (child.isValid()) {
+                count += countSolutions(child, progress);
             }
-            // implicit solitarechess.backtracking happens here
         }
-        return null;
+        return count;
+    }
+
+    /**
+     * Name a configuration for the flight recorder.
+     *
+     * @param config the configuration
+     * @return its hash code in hex
+     */
+    private static String puzzle(Configuration config) {
+        return Integer.toHexString(config.hashCode());
     }
 
 }
@@ -0,0 +1,203 @@
+package soltrchess.backtracking;
+
+import soltrchess.engine.MoveTables;
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Observer;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Solves the board being played in the background, before the player asks
+ * for a hint or the solution, so that by the time they do the answer is
+ * usually ready. The UIs watch() each board they load, which starts a
+ * solve straight away, and every move made on it after that re-targets
+ * the solve at the new board.
+ *
+ * Re-targeting costs nothing when the answer for the old board is already
+ * known and the move follows its solution (the rest of the solution
+ * solves the new board), or the old board has no solution (neither does
+ * any board after it). Otherwise the solve in flight is cancelled and a
+ * new one started. Whatever the old solve had finished is kept in the
+ * solver's transposition table, so the new one does not repeat it. A solve
+ * is cancelled through a flag it checks as it searches, never by
+ * interrupting the thread, which would close the solution cache's log if
+ * the solve had just finished and was writing to it.
+ *
+ * The solves run on a single daemon thread at the lowest priority, so they
+ * never hold up the UI or stop the program from exiting.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class PreSolver implements Observer<SoltrChessModel, SoltrChessModel.Status> {
+    /** returned by known() while the answer for the target is not known */
+    private static final int[] UNKNOWN = new int[0];
+
+    /** the solver the solves are run with */
+    private final SoltrChessSolver solver;
+    /** runs the background solves */
+    private final ExecutorService executor;
+    /** the board being solved in the background, or null */
+    private BoardSnapshot target;
+    /** the result of solving the target */
+    private Future<int[]> result;
+    /** set to stop the solve of the target, or null if it is not running one */
+    private AtomicBoolean cancelled;
+
+    /**
+     * Create a pre-solver.
+     *
+     * @param solver the solver to run the solves with
+     */
+    public PreSolver(SoltrChessSolver solver) {
+        this.solver = solver;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pre-solver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Start solving a board the player has just loaded, and follow every
+     * move made on it.
+     *
+     * @param board the board
+     */
+    public void watch(SoltrChessModel board) {
+        board.addObserver(this);
+        speculate(BoardSnapshot.of(board));
+    }
+
+    /**
+     * Called by the board being watched whenever a move is made or taken
+     * back; re-targets the background solve at the new board.
+     *
+     * @param board the board
+     * @param status the status of the game
+     */
+    @Override
+    public void update(SoltrChessModel board, SoltrChessModel.Status status) {
+        speculate(BoardSnapshot.of(board));
+    }
+
+    /**
+     * Make a board the target of the background solve.
+     *
+     * @param board the board
+     */
+    public synchronized void speculate(BoardSnapshot board) {
+        if (board.equals(this.target)) {
+            return;
+        }
+        if (board.getNumPieces() <= 1) {
+            cancel();
+            return;
+        }
+        int[] known = known();
+        if (known != UNKNOWN && isChild(this.target, board)) {
+            if (known == null) {
+                this.target = board;
+                this.result = CompletableFuture.completedFuture(null);
+                return;
+            } else if (known.length > 0 && this.target.apply(known[0]).equals(board)) {
+                this.target = board;
+                this.result = CompletableFuture.completedFuture(Arrays.copyOfRange(known, 1, known.length));
+                return;
+            }
+        }
+        cancel();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        this.target = board;
+        this.cancelled = cancelled;
+        this.result = this.executor.submit(() -> this.solver.solve(board, cancelled));
+    }
+
+    /**
+     * Get the answer for the target, if it is known.
+     *
+     * @return the solution, null if there is none, or UNKNOWN if it is not
+     *         known yet
+     */
+    private int[] known() {
+        if (this.result == null || !this.result.isDone() || this.result.isCancelled()) {
+            return UNKNOWN;
+        }
+        try {
+            return this.result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Is one board a capture away from another?
+     *
+     * @param parent the board before the capture
+     * @param child the board after the capture
+     * @return whether or not some capture on parent gives child
+     */
+    private static boolean isChild(BoardSnapshot parent, BoardSnapshot child) {
+        long packed = parent.getPacked();
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            int targets = PackedBoard.code(packed, from) == 0 ? 0 : MoveTables.captureMask(packed, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (PackedBoard.makeMove(packed, from, to) == child.getPacked()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop the background solve, if there is one.
+     */
+    public synchronized void cancel() {
+        if (this.cancelled != null) {
+            this.cancelled.set(true);
+        }
+        if (this.result != null) {
+            this.result.cancel(false);
+        }
+        this.target = null;
+        this.result = null;
+        this.cancelled = null;
+    }
+
+    /**
+     * Find a solution to a board, using the background solve if it is for
+     * the same board. If that solve is still running this waits for it
+     * rather than searching the same board twice.
+     *
+     * @param board the board
+     * @return the moves of a solution, or null if there is none
+     */
+    public int[] solve(BoardSnapshot board) {
+        Future<int[]> pending;
+        synchronized (this) {
+            pending = board.equals(this.target) ? this.result : null;
+        }
+        if (pending != null) {
+            try {
+                return pending.get();
+            } catch (CancellationException | ExecutionException e) {
+                // fall back to solving it here
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return this.solver.solve(board);
+    }
+}
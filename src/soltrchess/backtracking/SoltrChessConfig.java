@@ -1,5 +1,7 @@
 package soltrchess.backtracking;
 
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Move;
 import soltrchess.model.SoltrChessModel;
 
 import java.util.ArrayList;
@@ -20,6 +22,8 @@ public class SoltrChessConfig implements Configuration {
     private int numPieces;
     /** a list of the coordinates of all pieces currently on the board */
     private ArrayList<ArrayList<Integer>> pieces;
+    /** the encoded move that produced this configuration */
+    private int move;
 
     /**
      * Constructor
@@ -32,6 +36,7 @@ public class SoltrChessConfig implements Configuration {
         this.numPieces = 0;
         this.pieces = new ArrayList<>();
         this.board = board;
+        this.move = Move.NONE;
 
         for (int row=0; row< SoltrChessModel.ROWS; ++row) {
             for (int col = 0; col < SoltrChessModel.COLS; ++col) {
@@ -43,6 +48,16 @@ public class SoltrChessConfig implements Configuration {
         }
     }
 
+    /**
+     * Constructor for a starting configuration with its own copy of the
+     * pieces of a snapshot, so nothing is shared with the caller.
+     *
+     * @param start the starting board
+     */
+    public SoltrChessConfig(BoardSnapshot start) {
+        this(start.toModel(), start.getPieceBoard());
+    }
+
     /**
      * Copy constructor
      *
@@ -56,6 +71,7 @@ public class SoltrChessConfig implements Configuration {
         this.pieceBoard = new SoltrChessModel.Piece[SoltrChessModel.ROWS][SoltrChessModel.COLS];
         this.pieces = new ArrayList<>();
         this.board.makeMove(startPiece.get(1), startPiece.get(0), endPiece.get(1), endPiece.get(0));
+        this.move = Move.encode(startPiece.get(0), startPiece.get(1), endPiece.get(0), endPiece.get(1));
         for (int row=0; row< SoltrChessModel.ROWS; ++row) {
             for (int col = 0; col < SoltrChessModel.COLS; ++col) {
                 this.pieceBoard[row][col] = this.board.getContents(row, col);
@@ -81,6 +97,15 @@ public class SoltrChessConfig implements Configuration {
         return this.board;
     }
 
+    /**
+     * Get the move that produced this configuration.
+     *
+     * @return the encoded move, or Move.NONE for a starting configuration
+     */
+    public int getMove() {
+        return this.move;
+    }
+
     /**
      * Create a collection of possible successors of the current configuration.
      * This function only generates valid successors.
@@ -128,6 +153,32 @@ public class SoltrChessConfig implements Configuration {
         return this.numPieces == 1;
     }
 
+    /**
+     * Two configurations are equal if their boards hold the same pieces.
+     *
+     * @param o the object to compare to
+     * @return whether or not the configurations are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof SoltrChessConfig)) {
+            return false;
+        }
+        return this.board.equals(((SoltrChessConfig) o).board);
+    }
+
+    /**
+     * hashCode() method
+     *
+     * @return the board's hash code
+     */
+    @Override
+    public int hashCode() {
+        return this.board.hashCode();
+    }
+
     /**
      * toString() method
      *
@@ -0,0 +1,273 @@
+package soltrchess.backtracking;
+
+import soltrchess.cache.SolutionCache;
+import soltrchess.engine.TranspositionTable;
+import soltrchess.jfr.SearchProgress;
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Solves boards for the UIs and tools. Solutions are given as arrays of
+ * encoded moves (see Move), and are looked up in a SolutionCache before
+ * searching.
+ *
+ * Without a TranspositionTable the search explores the same
+ * configurations in the same order as the Backtracker does with
+ * SoltrChessConfig, but makes and takes back moves on a single copy of the
+ * board and records them in a single array, so it does not allocate while
+ * searching. If the solver has a table, boards already searched, by this or
+ * any other thread, are answered from it instead of being searched again,
+ * and on a board the table knows to be solvable the move stored with it is
+ * tried before the others. The order, and so the solution found, can then
+ * differ from the Backtracker's.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SoltrChessSolver {
+    /** the solver shared by the UIs */
+    private static SoltrChessSolver shared;
+
+    /** how often, in boards searched, the search checks whether it has been cancelled */
+    private static final int CANCEL_CHECK_MASK = (1 << 12) - 1;
+
+    /** the default size of the shared solver's transposition table */
+    private static final String DEFAULT_TABLE_SIZE = "64m";
+
+    /** the cache to consult first, or null if there is none */
+    private final SolutionCache cache;
+    /** the results of boards searched so far, or null if not kept or not yet allocated */
+    private volatile TranspositionTable table;
+    /** the size of the table to allocate at the first search, or 0 */
+    private final long tableBytes;
+
+    /**
+     * Constructor
+     *
+     * @param cache the cache to consult first, or null for no cache
+     */
+    public SoltrChessSolver(SolutionCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param cache the cache to consult first, or null for no cache
+     * @param table where to keep the results of searched boards, or null
+     */
+    public SoltrChessSolver(SolutionCache cache, TranspositionTable table) {
+        this.cache = cache;
+        this.table = table;
+        this.tableBytes = 0;
+    }
+
+    /**
+     * Constructor for a solver whose table is only allocated once a board
+     * actually has to be searched, so starting up costs nothing.
+     *
+     * @param cache the cache to consult first, or null for no cache
+     * @param tableBytes the size of the table, or 0 for no table
+     */
+    private SoltrChessSolver(SolutionCache cache, long tableBytes) {
+        this.cache = cache;
+        this.table = null;
+        this.tableBytes = tableBytes;
+    }
+
+    /**
+     * Get the solver shared by the UIs, which uses the default on-disk cache.
+     * If the cache cannot be opened the solver works without one. The size
+     * of its transposition table comes from the soltrchess.tt property,
+     * such as "512m" or "2g"; a size of 0 turns the table off.
+     *
+     * @return the shared solver
+     */
+    public static synchronized SoltrChessSolver getDefault() {
+        if (shared == null) {
+            SolutionCache cache = null;
+            try {
+                cache = SolutionCache.openDefault();
+            } catch (IOException e) {
+                System.err.println("Solution cache unavailable: " + e.getMessage());
+            }
+            long tableSize = TranspositionTable.parseSize(System.getProperty("soltrchess.tt", DEFAULT_TABLE_SIZE));
+            shared = new SoltrChessSolver(cache, tableSize);
+        }
+        return shared;
+    }
+
+    /**
+     * Find a solution to a board.
+     *
+     * @param board the board, which is not changed
+     * @return the moves of a solution, or null if there is none
+     */
+    public int[] solve(SoltrChessModel board) {
+        return solve(BoardSnapshot.of(board));
+    }
+
+    /**
+     * Find a solution to a board. Snapshots cannot change, so this can be
+     * called from any thread while the board is still being played on.
+     *
+     * @param board the board
+     * @return the moves of a solution, or null if there is none
+     */
+    public int[] solve(BoardSnapshot board) {
+        return solve(board, new AtomicBoolean());
+    }
+
+    /**
+     * Find a solution to a board, unless it is cancelled first. Setting the
+     * flag from another thread stops the search, and nothing is cached. The
+     * search is not stopped by interrupting its thread, since an interrupt
+     * also closes any file the thread is using, such as the cache's log.
+     *
+     * @param board the board
+     * @param cancelled set to stop the search
+     * @return the moves of a solution, or null if there is none
+     * @throws CancellationException if the search is cancelled
+     */
+    public int[] solve(BoardSnapshot board, AtomicBoolean cancelled) {
+        long key = board.getPacked();
+        if (this.cache != null) {
+            int[] cached = this.cache.get(key);
+            if (cached != null) {
+                return cached == SolutionCache.NO_SOLUTION ? null : cached;
+            }
+        }
+
+        int[] path = new int[Math.max(board.getNumPieces() - 1, 0)];
+        TranspositionTable table = table();
+        if (table != null) {
+            table.newSearch();
+        }
+        SearchProgress progress = SearchProgress.begin("SoltrChessSolver", Long.toHexString(key));
+        int[] moves = null;
+        try {
+            moves = search(board.toModel(), path, 0, table, progress, cancelled) ? path : null;
+        } finally {
+            progress.end(moves == null ? -1 : moves.length);
+        }
+
+        if (this.cache != null) {
+            try {
+                this.cache.put(key, moves);
+            } catch (IOException e) {
+                System.err.println("Could not cache solution: " + e.getMessage());
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Get the transposition table, allocating it the first time.
+     *
+     * @return the table, or null if the solver does not keep one
+     */
+    private TranspositionTable table() {
+        TranspositionTable table = this.table;
+        if (table == null && this.tableBytes > 0) {
+            synchronized (this) {
+                table = this.table;
+                if (table == null) {
+                    table = new TranspositionTable(this.tableBytes);
+                    this.table = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Stream the moves of every solution to a board. The stream can be made
+     * parallel, and short-circuiting operations such as limit(), findAny()
+     * and anyMatch() stop the search early.
+     *
+     * @param board the board, which is not changed
+     * @return a stream of the moves of each solution
+     */
+    public static Stream<int[]> solutions(SoltrChessModel board) {
+        return StreamSupport.stream(new SolutionSpliterator(new SoltrChessConfig(BoardSnapshot.of(board))), false);
+    }
+
+    /**
+     * Search for a solution by making and taking back moves on one board.
+     *
+     * @param board the board to search from, which is restored afterwards
+     * @param path the moves made so far
+     * @param depth the number of moves made so far
+     * @param table where to look up and keep the results of boards, or null
+     * @param progress the search's progress, for the flight recorder
+     * @param cancelled set to stop the search
+     * @return whether or not a solution was found; if so, path holds it
+     * @throws CancellationException if the search is cancelled
+     */
+    private static boolean search(SoltrChessModel board, int[] path, int depth, TranspositionTable table,
+                                  SearchProgress progress, AtomicBoolean cancelled) {
+        if ((progress.countNode() & CANCEL_CHECK_MASK) == 0 && cancelled.get()) {
+            throw new CancellationException("search cancelled");
+        }
+        int pieces = board.getNumPieces();
+        if (pieces == 1) {
+            return true;
+        }
+        long key = 0;
+        if (table != null) {
+            key = board.getPacked();
+            long data = table.probe(key);
+            int result = TranspositionTable.result(data);
+            if (result == TranspositionTable.UNSOLVABLE) {
+                return false;
+            }
+            int move = TranspositionTable.move(data);
+            if (result == TranspositionTable.SOLVABLE && move != Move.NONE
+                    && board.isValidMove(Move.fromCol(move), Move.fromRow(move), Move.toCol(move), Move.toRow(move))) {
+                SoltrChessModel.Piece captured = board.getContents(Move.toRow(move), Move.toCol(move));
+                Move.apply(board, move);
+                path[depth] = move;
+                boolean solved = search(board, path, depth + 1, table, progress, cancelled);
+                Move.undo(board, move, captured);
+                if (solved) {
+                    return true;
+                }
+            }
+        }
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            int fromRow = from / SoltrChessModel.COLS;
+            int fromCol = from % SoltrChessModel.COLS;
+            if (board.getContents(fromRow, fromCol) == SoltrChessModel.Piece.NONE) {
+                continue;
+            }
+            for (int to = 0; to < PackedBoard.SQUARES; to++) {
+                int toRow = to / SoltrChessModel.COLS;
+                int toCol = to % SoltrChessModel.COLS;
+                if (board.isValidMove(fromCol, fromRow, toCol, toRow)) {
+                    SoltrChessModel.Piece captured = board.getContents(toRow, toCol);
+                    board.makeMove(fromCol, fromRow, toCol, toRow);
+                    path[depth] = Move.encode(fromRow, fromCol, toRow, toCol);
+                    boolean solved = search(board, path, depth + 1, table, progress, cancelled);
+                    board.unmakeMove(fromCol, fromRow, toCol, toRow, captured);
+                    if (solved) {
+                        if (table != null) {
+                            table.store(key, TranspositionTable.SOLVABLE, path[depth], pieces);
+                        }
+                        return true;
+                    }
+                }
+            }
+        }
+        if (table != null) {
+            table.store(key, TranspositionTable.UNSOLVABLE, Move.NONE, pieces);
+        }
+        return false;
+    }
+}
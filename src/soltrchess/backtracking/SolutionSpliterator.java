@@ -0,0 +1,161 @@
+package soltrchess.backtracking;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the SoltrChessConfig search tree depth first, handing out the
+ * moves of every solution it finds. The configurations still to be explored
+ * are kept on a stack, so a split can hand off the shallowest of them (the
+ * ones with the largest subtrees) to another spliterator, which lets a
+ * parallel stream spread the search across threads.
+ *
+ * Solutions are not reported in any particular order once the search has
+ * been split.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SolutionSpliterator implements Spliterator<int[]> {
+    /** splits are only made while some unexplored configuration is this shallow */
+    private static final int SPLIT_DEPTH = 4;
+
+    /** a configuration still to be explored, and the moves leading to it */
+    private static class Node {
+        /** the configuration */
+        private final SoltrChessConfig config;
+        /** the moves leading to the configuration */
+        private final int[] path;
+
+        /**
+         * Constructor
+         *
+         * @param config the configuration
+         * @param path the moves leading to the configuration
+         */
+        private Node(SoltrChessConfig config, int[] path) {
+            this.config = config;
+            this.path = path;
+        }
+    }
+
+    /** the configurations still to be explored; the shallowest are at the bottom */
+    private final Deque<Node> stack;
+
+    /**
+     * Create a spliterator over every solution of a configuration.
+     *
+     * @param root the starting configuration
+     */
+    public SolutionSpliterator(SoltrChessConfig root) {
+        this(new ArrayDeque<>());
+        this.stack.push(new Node(root, new int[0]));
+    }
+
+    /**
+     * Create a spliterator over part of the search tree.
+     *
+     * @param stack the configurations to explore
+     */
+    private SolutionSpliterator(Deque<Node> stack) {
+        this.stack = stack;
+    }
+
+    /**
+     * Explore until the next solution is found.
+     *
+     * @param action given the moves of the solution
+     * @return false if there are no more solutions
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        while (!this.stack.isEmpty()) {
+            Node node = this.stack.pop();
+            if (node.config.isGoal()) {
+                action.accept(node.path);
+                return true;
+            }
+            push(expand(node));
+        }
+        return false;
+    }
+
+    /**
+     * Get the children of a configuration.
+     *
+     * @param node the configuration to expand
+     * @return its children, in the order the Backtracker would visit them
+     */
+    private static ArrayList<Node> expand(Node node) {
+        Collection<Configuration> successors = node.config.getSuccessors();
+        ArrayList<Node> children = new ArrayList<>(successors.size());
+        for (Configuration successor : successors) {
+            SoltrChessConfig child = (SoltrChessConfig) successor;
+            int[] path = Arrays.copyOf(node.path, node.path.length + 1);
+            path[node.path.length] = child.getMove();
+            children.add(new Node(child, path));
+        }
+        return children;
+    }
+
+    /**
+     * Push children so that the first one is on top.
+     *
+     * @param children the children to push
+     */
+    private void push(ArrayList<Node> children) {
+        for (int i = children.size() - 1; i >= 0; i--) {
+            this.stack.push(children.get(i));
+        }
+    }
+
+    /**
+     * Hand off the shallowest half of the unexplored configurations. A lone
+     * configuration is expanded first so that there is something to split.
+     *
+     * @return a spliterator over the handed off part, or null if the
+     *         remaining work is too deep to be worth splitting
+     */
+    @Override
+    public Spliterator<int[]> trySplit() {
+        if (this.stack.size() == 1) {
+            Node only = this.stack.peek();
+            if (only.config.isGoal() || only.path.length >= SPLIT_DEPTH) {
+                return null;
+            }
+            push(expand(this.stack.pop()));
+        }
+        if (this.stack.size() < 2 || this.stack.peekLast().path.length >= SPLIT_DEPTH) {
+            return null;
+        }
+        Deque<Node> handedOff = new ArrayDeque<>();
+        for (int i = this.stack.size() / 2; i > 0; i--) {
+            handedOff.push(this.stack.pollLast());
+        }
+        return new SolutionSpliterator(handedOff);
+    }
+
+    /**
+     * The number of solutions is not known ahead of time.
+     *
+     * @return Long.MAX_VALUE
+     */
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Solutions are never null.
+     *
+     * @return NONNULL
+     */
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+}
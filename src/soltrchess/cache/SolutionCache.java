@@ -0,0 +1,394 @@
+package soltrchess.cache;
+
+import soltrchess.jfr.CacheEvent;
+import soltrchess.jfr.SearchProgress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of solutions, keyed by packed board. Every solution is
+ * appended to a log file and kept in an in-memory index, so a later run can
+ * answer straight from the index once the log has been read back.
+ *
+ * Each log record is the key, the number of moves (-1 if the board has no
+ * solution), the moves themselves as shorts and a CRC32 of all of that. A
+ * crash can only leave a partial record at the end of the log, which is
+ * cut off the next time the log is opened.
+ *
+ * The index holds at most a fixed number of boards and forgets the least
+ * recently used one when it is full. Forgotten boards, and boards that were
+ * stored twice, stay in the log until it is compacted.
+ *
+ * Several processes may share one log. Appends, compaction and reading the
+ * log back all hold a lock on a .lock file next to it, and compaction first
+ * reads back what the other processes have appended, so it keeps their
+ * boards too. A process that finds the log has been replaced by another's
+ * compaction reopens it before appending, instead of appending to the old
+ * log that is no longer in the directory.
+ *
+ * The index and the log have separate monitors. Lookups and the index
+ * only ever wait for each other, never for the lock or the log's I/O, so a
+ * lookup is not held up by a slow append or by another process compacting.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SolutionCache implements AutoCloseable {
+    /** returned by get() for a board that is known to have no solution */
+    public static final int[] NO_SOLUTION = new int[0];
+    /** the default largest number of boards kept */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    /** the log file */
+    private final Path file;
+    /** the file locked while the log is read or written */
+    private final Path lockFile;
+    /** the largest number of boards kept */
+    private final int maxEntries;
+    /** the boards kept, least recently used first; guarded by this */
+    private final LinkedHashMap<Long, int[]> index;
+    /** guards the log, logKey and records, and is held while the log is written */
+    private final Object writing;
+    /** the output stream appending to the log */
+    private DataOutputStream log;
+    /** the identity of the log file the stream appends to, or null if the file system has none */
+    private Object logKey;
+    /** the number of records in the log */
+    private long records;
+
+    /**
+     * Open a cache, reading back any solutions already in its log.
+     *
+     * @param file the log file, created if it does not exist
+     * @param maxEntries the largest number of boards kept
+     * @throws IOException if the log cannot be read or opened for writing
+     */
+    public SolutionCache(Path file, int maxEntries) throws IOException {
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.maxEntries = maxEntries;
+        this.index = newIndex();
+        this.writing = new Object();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        synchronized (SolutionCache.class) {
+            FileChannel lock = lock();
+            try {
+                if (Files.exists(file)) {
+                    load(this.index);
+                }
+                openLog();
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Open the cache named by the soltrchess.cache system property, or
+     * ~/.soltrchess/solutions.cache if it is not set. The size cap comes from
+     * the soltrchess.cache.max property.
+     *
+     * @return the cache
+     * @throws IOException if the cache cannot be opened
+     */
+    public static SolutionCache openDefault() throws IOException {
+        String defaultPath = Path.of(System.getProperty("user.home"), ".soltrchess", "solutions.cache").toString();
+        Path file = Path.of(System.getProperty("soltrchess.cache", defaultPath));
+        int maxEntries = Integer.getInteger("soltrchess.cache.max", DEFAULT_MAX_ENTRIES);
+        return new SolutionCache(file, maxEntries);
+    }
+
+    /**
+     * Create an empty map that keeps boards least recently used first, and
+     * forgets the least recently used one when it holds more than
+     * maxEntries.
+     *
+     * @return the map
+     */
+    private LinkedHashMap<Long, int[]> newIndex() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > SolutionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Read every intact record of the log into a map, and cut off a partial
+     * record left behind by a crash. The lock and writing must be held.
+     *
+     * @param into the map, which gets the records in the order they were written
+     * @throws IOException if the log cannot be read
+     */
+    private void load(Map<Long, int[]> into) throws IOException {
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                long key;
+                int[] moves;
+                try {
+                    key = in.readLong();
+                    int count = in.readByte();
+                    moves = count < 0 ? NO_SOLUTION : new int[count];
+                    for (int i = 0; i < moves.length; i++) {
+                        moves[i] = in.readShort();
+                    }
+                    if (in.readInt() != checksum(crc, key, moves)) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                into.put(key, moves);
+                this.records++;
+                good += recordSize(moves);
+            }
+        }
+        if (good < Files.size(this.file)) {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+                channel.truncate(good);
+            }
+        }
+    }
+
+    /**
+     * Lock the log against the other processes sharing it. A file lock is
+     * held by the whole process, so the caller must also hold the monitor of
+     * this class, which keeps two caches on the same log in one process from
+     * locking it at once.
+     *
+     * @return the channel holding the lock, which releases it when closed
+     * @throws IOException if the lock cannot be taken
+     */
+    private FileChannel lock() throws IOException {
+        FileChannel channel = FileChannel.open(this.lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Open the log for appending. The lock and writing must be held.
+     *
+     * @throws IOException if the log cannot be opened
+     */
+    private void openLog() throws IOException {
+        OutputStream out = Files.newOutputStream(this.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.log = new DataOutputStream(new BufferedOutputStream(out));
+        this.logKey = Files.readAttributes(this.file, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Has another process replaced or removed the log since it was opened?
+     * The lock and writing must be held.
+     *
+     * @return whether or not the log must be reopened
+     * @throws IOException if the log cannot be checked
+     */
+    private boolean replaced() throws IOException {
+        if (!Files.exists(this.file)) {
+            return true;
+        }
+        Object key = Files.readAttributes(this.file, BasicFileAttributes.class).fileKey();
+        return key != null && !key.equals(this.logKey);
+    }
+
+    /**
+     * Get the size of a record in the log.
+     *
+     * @param moves the moves of the record
+     * @return the size in bytes
+     */
+    private static long recordSize(int[] moves) {
+        return Long.BYTES + 1 + (long) Short.BYTES * moves.length + Integer.BYTES;
+    }
+
+    /**
+     * Compute the checksum of a record.
+     *
+     * @param crc the checksum to reuse
+     * @param key the key of the record
+     * @param moves the moves of the record
+     * @return the checksum
+     */
+    private static int checksum(CRC32 crc, long key, int[] moves) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (key >>> shift));
+        }
+        crc.update(moves == NO_SOLUTION ? -1 : moves.length);
+        for (int move : moves) {
+            crc.update(move >>> 8);
+            crc.update(move);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write a record to a stream.
+     *
+     * @param out the stream
+     * @param key the key of the record
+     * @param moves the moves of the record
+     * @throws IOException if the record cannot be written
+     */
+    private static void write(DataOutputStream out, long key, int[] moves) throws IOException {
+        out.writeLong(key);
+        out.writeByte(moves == NO_SOLUTION ? -1 : moves.length);
+        for (int move : moves) {
+            out.writeShort(move);
+        }
+        out.writeInt(checksum(new CRC32(), key, moves));
+    }
+
+    /**
+     * Look up a board.
+     *
+     * @param key the packed board
+     * @return the moves of its solution, NO_SOLUTION if it has none, or null
+     *         if the board is not in the cache; the array must not be changed
+     */
+    public synchronized int[] get(long key) {
+        int[] moves = this.index.get(key);
+        if (SearchProgress.recording()) {
+            CacheEvent event = new CacheEvent();
+            if (event.shouldCommit()) {
+                event.puzzle = Long.toHexString(key);
+                event.hit = moves != null;
+                event.commit();
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Store the solution of a board, and compact the log once it holds more
+     * than twice as many records as the index.
+     *
+     * @param key the packed board
+     * @param moves the moves of its solution, or null if it has none
+     * @throws IOException if the solution cannot be written
+     */
+    public void put(long key, int[] moves) throws IOException {
+        int[] stored = moves == null ? NO_SOLUTION : moves.clone();
+        synchronized (this) {
+            this.index.put(key, stored);
+        }
+        boolean full;
+        synchronized (this.writing) {
+            synchronized (SolutionCache.class) {
+                FileChannel lock = lock();
+                try {
+                    if (replaced()) {
+                        // compacted by another process; the new log holds about
+                        // as many records as its index
+                        this.log.close();
+                        openLog();
+                        this.records = size();
+                    }
+                    write(this.log, key, stored);
+                    this.log.flush();
+                } finally {
+                    lock.close();
+                }
+            }
+            this.records++;
+            full = this.records > 2L * Math.max(size(), 1024);
+        }
+        if (full) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log so that it only holds the boards in the index, after
+     * adding the boards other processes have appended to it. Those count as
+     * less recently used than this process's own. The new log is written
+     * next to the old one and then moved over it, so a crash during
+     * compaction leaves the old log in place.
+     *
+     * @throws IOException if the log cannot be rewritten
+     */
+    public void compact() throws IOException {
+        synchronized (this.writing) {
+            synchronized (SolutionCache.class) {
+                FileChannel lock = lock();
+                try {
+                    this.log.close();
+                    Map<Long, int[]> logged = new LinkedHashMap<>();
+                    if (Files.exists(this.file)) {
+                        load(logged);
+                    }
+                    // boards put from now on wait for writing, and are
+                    // appended to the new log
+                    Map<Long, int[]> kept = newIndex();
+                    kept.putAll(logged);
+                    synchronized (this) {
+                        kept.putAll(this.index);
+                    }
+                    Path temp = this.file.resolveSibling(this.file.getFileName() + ".compact");
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                        // least recently used first, so the order survives a reload
+                        for (Map.Entry<Long, int[]> entry : kept.entrySet()) {
+                            write(out, entry.getKey(), entry.getValue());
+                        }
+                    }
+                    Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    this.records = kept.size();
+                    openLog();
+                    synchronized (this) {
+                        Map<Long, int[]> own = new LinkedHashMap<>(this.index);
+                        this.index.clear();
+                        this.index.putAll(logged);
+                        this.index.putAll(own);
+                    }
+                } finally {
+                    lock.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of boards in the index.
+     *
+     * @return the number of boards
+     */
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Close the log.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.writing) {
+            this.log.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package soltrchess.engine;
+
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.util.Arrays;
+
+/**
+ * Answers the same move question for many boards at once. A batch is a
+ * plain array of packed boards (see PackedBoard), one board per lane, and
+ * each kernel writes one result per lane into an output array.
+ *
+ * The kernels hoist everything that depends only on the move out of the
+ * loop and do the same branch-free bit operations for every lane, so the
+ * loop body has no data-dependent branches and the JIT is free to unroll
+ * and vectorize it. Every answer matches SoltrChessModel.isValidMove().
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class BatchMoveValidator {
+    /**
+     * Batch validators only hold static helpers.
+     */
+    private BatchMoveValidator() {
+    }
+
+    /**
+     * Pack a batch of boards.
+     *
+     * @param boards the boards
+     * @return the packed boards, one per lane
+     */
+    public static long[] pack(SoltrChessModel[] boards) {
+        long[] packed = new long[boards.length];
+        for (int i = 0; i < boards.length; i++) {
+            packed[i] = PackedBoard.pack(boards[i]);
+        }
+        return packed;
+    }
+
+    /**
+     * Check one capture on every board of a batch.
+     *
+     * @param boards the packed boards
+     * @param count the number of lanes to check
+     * @param from the square of the piece to move
+     * @param to the square of the piece to take
+     * @param valid set to 1 for each lane where the capture is valid,
+     *              otherwise 0
+     */
+    public static void validate(long[] boards, int count, int from, int to, byte[] valid) {
+        int index = from * MoveTables.SQUARES + to;
+        int reach = MoveTables.REACH[index];
+        int rides = MoveTables.RIDES[index];
+        long between = MoveTables.BETWEEN[index];
+        int fromShift = PackedBoard.BITS * from;
+        int toShift = PackedBoard.BITS * to;
+        for (int i = 0; i < count; i++) {
+            long packed = boards[i];
+            int piece = (int) (packed >>> fromShift) & (int) PackedBoard.SQUARE_MASK;
+            int target = (int) (packed >>> toShift) & (int) PackedBoard.SQUARE_MASK;
+            long blockers = packed & between;
+            int reaches = (reach >>> piece) & 1;
+            int occupied = (target | -target) >>> 31;
+            int blocked = (int) ((blockers | -blockers) >>> 63) & (rides >>> piece);
+            valid[i] = (byte) (reaches & occupied & ~blocked & 1);
+        }
+    }
+
+    /**
+     * Get every square the piece on one square can capture, for every board
+     * of a batch.
+     *
+     * @param boards the packed boards
+     * @param count the number of lanes to check
+     * @param from the square of the piece
+     * @param masks set to the capture mask of each lane; bit s is set if the
+     *              piece can capture on square s
+     */
+    public static void captureMasks(long[] boards, int count, int from, int[] masks) {
+        byte[] valid = new byte[count];
+        Arrays.fill(masks, 0, count, 0);
+        for (int to = 0; to < MoveTables.SQUARES; to++) {
+            validate(boards, count, from, to, valid);
+            for (int i = 0; i < count; i++) {
+                masks[i] |= valid[i] << to;
+            }
+        }
+    }
+
+    /**
+     * Count the captures that can be made on every board of a batch.
+     *
+     * @param boards the packed boards
+     * @param count the number of lanes to check
+     * @param successors set to the number of captures of each lane, which is
+     *                   its number of successors
+     */
+    public static void successorCounts(long[] boards, int count, int[] successors) {
+        byte[] valid = new byte[count];
+        Arrays.fill(successors, 0, count, 0);
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            for (int to = 0; to < MoveTables.SQUARES; to++) {
+                if (MoveTables.REACH[from * MoveTables.SQUARES + to] == 0) {
+                    continue;
+                }
+                validate(boards, count, from, to, valid);
+                for (int i = 0; i < count; i++) {
+                    successors[i] += valid[i];
+                }
+            }
+        }
+    }
+}
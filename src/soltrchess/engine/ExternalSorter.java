@@ -0,0 +1,248 @@
+package soltrchess.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts and removes duplicates from any number of longs using a fixed
+ * amount of memory. Values are collected in a buffer; whenever it fills it
+ * is sorted and written out as a run, and the runs are merged into a single
+ * sorted file at the end. At most FAN_IN runs are merged at once, so the
+ * number of open files is bounded as well.
+ *
+ * Files are plain sequences of big-endian longs, which Reader reads back.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class ExternalSorter {
+    /** the most runs merged in one pass */
+    private static final int FAN_IN = 64;
+    /** the size of the buffer of each file stream */
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    /** the directory runs are written to */
+    private final Path dir;
+    /** the prefix of the names of the runs */
+    private final String name;
+    /** the values not yet written to a run */
+    private final long[] buffer;
+    /** the number of values in the buffer */
+    private int size;
+    /** the runs written so far */
+    private final List<Path> runs;
+
+    /**
+     * Create a sorter.
+     *
+     * @param dir the directory to write runs to
+     * @param name the prefix of the names of the runs
+     * @param bufferLongs the number of values held in memory
+     */
+    public ExternalSorter(Path dir, String name, int bufferLongs) {
+        this.dir = dir;
+        this.name = name;
+        this.buffer = new long[bufferLongs];
+        this.size = 0;
+        this.runs = new ArrayList<>();
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @throws IOException if the buffer is full and cannot be written out
+     */
+    public void add(long value) throws IOException {
+        if (this.size == this.buffer.length) {
+            spill();
+        }
+        this.buffer[this.size++] = value;
+    }
+
+    /**
+     * Sort the buffer, remove its duplicates and write it out as a run.
+     *
+     * @throws IOException if the run cannot be written
+     */
+    private void spill() throws IOException {
+        Arrays.sort(this.buffer, 0, this.size);
+        Path run = this.dir.resolve(this.name + ".run" + this.runs.size());
+        try (DataOutputStream out = open(run)) {
+            for (int i = 0; i < this.size; i++) {
+                if (i == 0 || this.buffer[i] != this.buffer[i - 1]) {
+                    out.writeLong(this.buffer[i]);
+                }
+            }
+        }
+        this.runs.add(run);
+        this.size = 0;
+    }
+
+    /**
+     * Write every value added, sorted and without duplicates, to a file, and
+     * delete the runs. The sorter is empty afterwards.
+     *
+     * @param file the file to write
+     * @return the number of distinct values written
+     * @throws IOException if the file or a run cannot be read or written
+     */
+    public long finish(Path file) throws IOException {
+        if (this.size > 0 || this.runs.isEmpty()) {
+            spill();
+        }
+        int pass = 0;
+        while (this.runs.size() > FAN_IN) {
+            List<Path> group = new ArrayList<>(this.runs.subList(0, FAN_IN));
+            this.runs.subList(0, FAN_IN).clear();
+            Path merged = this.dir.resolve(this.name + ".pass" + pass++);
+            merge(group, merged);
+            this.runs.add(merged);
+        }
+        long count = merge(this.runs, file);
+        this.runs.clear();
+        return count;
+    }
+
+    /**
+     * Merge sorted runs into one file, removing duplicates, and delete them.
+     *
+     * @param inputs the runs
+     * @param file the file to write
+     * @return the number of distinct values written
+     * @throws IOException if a file cannot be read or written
+     */
+    private static long merge(List<Path> inputs, Path file) throws IOException {
+        PriorityQueue<Reader> heads = new PriorityQueue<>((a, b) -> Long.compare(a.peek(), b.peek()));
+        long count = 0;
+        try (DataOutputStream out = open(file)) {
+            for (Path input : inputs) {
+                Reader reader = new Reader(input);
+                if (reader.hasNext()) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            boolean first = true;
+            long last = 0;
+            while (!heads.isEmpty()) {
+                Reader reader = heads.poll();
+                long value = reader.next();
+                if (first || value != last) {
+                    out.writeLong(value);
+                    count++;
+                    first = false;
+                    last = value;
+                }
+                if (reader.hasNext()) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (Reader reader : heads) {
+                reader.close();
+            }
+        }
+        for (Path input : inputs) {
+            Files.deleteIfExists(input);
+        }
+        return count;
+    }
+
+    /**
+     * Open a file of longs for writing.
+     *
+     * @param file the file
+     * @return the output stream
+     * @throws IOException if the file cannot be opened
+     */
+    static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER));
+    }
+
+    /**
+     * Reads a file of longs in order, one value ahead.
+     */
+    public static class Reader implements AutoCloseable {
+        /** the input stream reading the file */
+        private final DataInputStream in;
+        /** the next value */
+        private long next;
+        /** whether or not there is a next value */
+        private boolean hasNext;
+
+        /**
+         * Open a file of longs.
+         *
+         * @param file the file
+         * @throws IOException if the file cannot be read
+         */
+        public Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER));
+            advance();
+        }
+
+        /**
+         * Read the next value ahead of time.
+         *
+         * @throws IOException if the file cannot be read
+         */
+        private void advance() throws IOException {
+            try {
+                this.next = this.in.readLong();
+                this.hasNext = true;
+            } catch (EOFException e) {
+                this.hasNext = false;
+            }
+        }
+
+        /**
+         * Are there any values left?
+         *
+         * @return whether or not next() can be called
+         */
+        public boolean hasNext() {
+            return this.hasNext;
+        }
+
+        /**
+         * Look at the next value without reading past it.
+         *
+         * @rit.pre hasNext()
+         * @return the next value
+         */
+        public long peek() {
+            return this.next;
+        }
+
+        /**
+         * Read the next value.
+         *
+         * @rit.pre hasNext()
+         * @return the next value
+         * @throws IOException if the file cannot be read
+         */
+        public long next() throws IOException {
+            long value = this.next;
+            advance();
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package soltrchess.engine;
+
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+
+/**
+ * Finds the capture sequence that leaves the fewest pieces on a board, for
+ * boards that cannot be solved. On a solvable board it finds a solution,
+ * which leaves one.
+ *
+ * The search is branch and bound over packed boards (see PackedBoard). A
+ * board is not searched if its lower bound (see lowerBound()) is no better
+ * than the best sequence found so far, and the search stops as soon as it
+ * reaches the starting board's own bound. Every board searched is
+ * remembered, either with the exact fewest pieces reachable from it and
+ * the move that reaches them, or, if it was cut off, with a number the
+ * fewest pieces is known to be at least.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class FewestPieces {
+    /** the bit of a memo entry marking the fewest pieces as exact */
+    private static final long EXACT = 1L << 32;
+
+    /** the result of a search */
+    public static class Result {
+        /** the fewest pieces that can be left */
+        public final int pieces;
+        /** the captures that leave them */
+        public final int[] moves;
+        /** the number of boards searched */
+        public final long nodes;
+
+        /**
+         * Constructor
+         *
+         * @param pieces the fewest pieces that can be left
+         * @param moves the captures that leave them
+         * @param nodes the number of boards searched
+         */
+        private Result(int pieces, int[] moves, long nodes) {
+            this.pieces = pieces;
+            this.moves = moves;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * the boards searched: the fewest pieces in the low 16 bits, the best
+     * move above them, and EXACT if the fewest pieces is exact rather than
+     * a lower bound
+     */
+    private final HashMap<Long, Long> memo;
+    /** the number of boards searched */
+    private long nodes;
+
+    /**
+     * Create a search.
+     */
+    private FewestPieces() {
+        this.memo = new HashMap<>();
+    }
+
+    /**
+     * Find the capture sequence that leaves the fewest pieces.
+     *
+     * @param packed the packed starting board
+     * @return the fewest pieces and the moves that leave them
+     */
+    public static Result solve(long packed) {
+        FewestPieces search = new FewestPieces();
+        int pieces = search.search(packed, PackedBoard.count(packed) + 1);
+        int[] moves = new int[PackedBoard.count(packed) - pieces];
+        long board = packed;
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = (int) (search.memo.get(board) >>> 16 & 0xFFFF);
+            board = PackedBoard.makeMove(board, Move.from(moves[i]), Move.to(moves[i]));
+        }
+        return new Result(pieces, moves, search.nodes);
+    }
+
+    /**
+     * Get a number the fewest pieces reachable from a board is at least. A
+     * piece is frozen if it can never capture anything, so it never moves,
+     * and nothing else on the board can ever capture it. Pieces only ever
+     * land on squares that are occupied now, so both are checked against
+     * every occupied square and every kind of piece on the board, however
+     * the pieces move around. Frozen pieces are all left at the end, and if
+     * there are any other pieces, at least one of them is too, since the
+     * last capture among them leaves the piece that made it.
+     *
+     * @param packed the packed board
+     * @return the lower bound
+     */
+    public static int lowerBound(long packed) {
+        int occupied = 0;
+        int kinds = 0;
+        for (int square = 0; square < PackedBoard.SQUARES; square++) {
+            int code = PackedBoard.code(packed, square);
+            if (code != 0) {
+                occupied |= 1 << square;
+                kinds |= 1 << code;
+            }
+        }
+        int frozen = 0;
+        int others = 0;
+        for (int square = 0; square < PackedBoard.SQUARES; square++) {
+            int code = PackedBoard.code(packed, square);
+            if (code == 0) {
+                continue;
+            }
+            boolean stuck = true;
+            int rest = occupied & ~(1 << square);
+            while (rest != 0 && stuck) {
+                int other = Integer.numberOfTrailingZeros(rest);
+                rest &= rest - 1;
+                stuck = (MoveTables.REACH[square * MoveTables.SQUARES + other] >>> code & 1) == 0
+                        && (MoveTables.REACH[other * MoveTables.SQUARES + square] & kinds) == 0;
+            }
+            if (stuck) {
+                frozen++;
+            } else {
+                others++;
+            }
+        }
+        return frozen + (others > 0 ? 1 : 0);
+    }
+
+    /**
+     * Find the fewest pieces reachable from a board, if it is below a limit.
+     *
+     * @param board the packed board
+     * @param limit the number of pieces not worth finding
+     * @return the fewest pieces if it is below limit, otherwise a number of
+     *         at least limit that the fewest pieces is at least
+     */
+    private int search(long board, int limit) {
+        Long entry = this.memo.get(board);
+        int lower = lowerBound(board);
+        if (entry != null) {
+            int known = (int) (entry & 0xFFFF);
+            if ((entry & EXACT) != 0) {
+                return known;
+            }
+            lower = Math.max(lower, known);
+        }
+        if (lower >= limit) {
+            return lower;
+        }
+        this.nodes++;
+        int best = PackedBoard.count(board);
+        int bestMove = 0;
+        int cut = Integer.MAX_VALUE;
+        for (int from = 0; from < MoveTables.SQUARES && best > lower; from++) {
+            if (PackedBoard.code(board, from) == 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(board, from);
+            while (targets != 0 && best > lower) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                int childLimit = Math.min(limit, best);
+                int pieces = search(PackedBoard.makeMove(board, from, to), childLimit);
+                if (pieces < childLimit) {
+                    best = pieces;
+                    bestMove = from << 8 | to;
+                } else {
+                    cut = Math.min(cut, pieces);
+                }
+            }
+        }
+        if (best < limit) {
+            this.memo.put(board, EXACT | (long) bestMove << 16 | best);
+            return best;
+        }
+        int atLeast = Math.max(lower, Math.min(cut, best));
+        this.memo.put(board, (long) atLeast);
+        return atLeast;
+    }
+
+    /**
+     * Find the fewest pieces that can be left on game boards.
+     *
+     * @param args the game files
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java FewestPieces game-file...");
+            System.exit(1);
+        }
+        for (String file : args) {
+            SoltrChessModel board;
+            try {
+                board = new SoltrChessModel(file);
+            } catch (FileNotFoundException e) {
+                System.out.println(file + ": cannot be read");
+                continue;
+            }
+            long packed = PackedBoard.pack(board);
+            long begin = System.nanoTime();
+            Result result = solve(packed);
+            double millis = (System.nanoTime() - begin) / 1e6;
+            StringBuilder moves = new StringBuilder();
+            for (int move : result.moves) {
+                moves.append(moves.length() == 0 ? "" : ", ").append(Move.toString(move));
+            }
+            System.out.printf("%s: %d of %d pieces left (bound %d), %d boards, %.1f ms: %s%n", file, result.pieces,
+                    PackedBoard.count(packed), lowerBound(packed), result.nodes, millis, moves);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package soltrchess.engine;
+
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Level synchronous breadth first search over packed boards (see
+ * PackedBoard). Every capture removes one piece, so the boards with the
+ * same number of pieces form a layer, and a whole layer is expanded in
+ * parallel before the next one is started.
+ *
+ * The boards of each layer are kept in a ConcurrentHashMap from board to
+ * the parent it was first reached from. Putting a child in the map both
+ * removes duplicates, however many parents reach it, and remembers a
+ * parent to rebuild a path from. The moves of a path are found by
+ * comparing each board with its parent.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class FrontierSearch {
+    /** the pool the layers are expanded in */
+    private final ForkJoinPool pool;
+    /** the boards of each layer mapped to their parents, starting board first */
+    private final List<ConcurrentHashMap<Long, Long>> layers;
+    /** how long it took to build each layer, in nanoseconds */
+    private final List<Long> nanos;
+    /** the number of boards in each layer with no captures left */
+    private final List<Long> deadEnds;
+    /** every board with no captures left */
+    private final ConcurrentLinkedQueue<Long> ends;
+
+    /**
+     * Create a search.
+     *
+     * @param threads the number of threads to expand layers with
+     */
+    public FrontierSearch(int threads) {
+        this.pool = new ForkJoinPool(threads);
+        this.layers = new ArrayList<>();
+        this.nanos = new ArrayList<>();
+        this.deadEnds = new ArrayList<>();
+        this.ends = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Search every board reachable from a starting board.
+     *
+     * @param start the packed starting board
+     * @throws InterruptedException if interrupted while expanding a layer
+     */
+    public void run(long start) throws InterruptedException {
+        this.layers.clear();
+        this.nanos.clear();
+        this.deadEnds.clear();
+        this.ends.clear();
+        ConcurrentHashMap<Long, Long> frontier = new ConcurrentHashMap<>();
+        frontier.put(start, start);
+        this.layers.add(frontier);
+        this.nanos.add(0L);
+
+        while (!frontier.isEmpty()) {
+            long begin = System.nanoTime();
+            long[] boards = frontier.keySet().stream().mapToLong(Long::longValue).toArray();
+            ConcurrentHashMap<Long, Long> next = new ConcurrentHashMap<>(boards.length * 2);
+            LongAdder dead = new LongAdder();
+            try {
+                this.pool.submit(() -> Arrays.stream(boards).parallel().forEach(board -> {
+                    if (!expand(board, next)) {
+                        dead.increment();
+                        this.ends.add(board);
+                    }
+                })).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            this.deadEnds.add(dead.sum());
+            if (next.isEmpty()) {
+                break;
+            }
+            this.layers.add(next);
+            this.nanos.add(System.nanoTime() - begin);
+            frontier = next;
+        }
+    }
+
+    /**
+     * Add the children of a board to the next layer.
+     *
+     * @param board the packed board
+     * @param next the next layer
+     * @return false if the board has no children
+     */
+    private static boolean expand(long board, ConcurrentHashMap<Long, Long> next) {
+        boolean any = false;
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            if (PackedBoard.code(board, from) == 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(board, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                next.putIfAbsent(PackedBoard.makeMove(board, from, to), board);
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Get the number of layers, including the starting board's.
+     *
+     * @return the number of layers
+     */
+    public int getLayers() {
+        return this.layers.size();
+    }
+
+    /**
+     * Get the number of distinct boards in a layer.
+     *
+     * @param layer the number of captures made to reach the layer
+     * @return the number of boards
+     */
+    public int getLayerSize(int layer) {
+        return this.layers.get(layer).size();
+    }
+
+    /**
+     * Get how long it took to build a layer.
+     *
+     * @param layer the number of captures made to reach the layer
+     * @return the time in milliseconds
+     */
+    public double getLayerMillis(int layer) {
+        return this.nanos.get(layer) / 1e6;
+    }
+
+    /**
+     * Get the number of boards in a layer with no captures left.
+     *
+     * @param layer the number of captures made to reach the layer
+     * @return the number of dead ends
+     */
+    public long getDeadEnds(int layer) {
+        return this.deadEnds.get(layer);
+    }
+
+    /**
+     * Get every reachable board with no captures left.
+     *
+     * @return the packed end states
+     */
+    public long[] getEndStates() {
+        return this.ends.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Rebuild the moves that reach a board from the starting board.
+     *
+     * @param board a packed board reached by the search
+     * @return the moves, or null if the board was not reached
+     */
+    public int[] pathTo(long board) {
+        int pieces = PackedBoard.count(board);
+        int layer = PackedBoard.count(this.layers.get(0).keySet().iterator().next()) - pieces;
+        if (layer < 0 || layer >= this.layers.size() || !this.layers.get(layer).containsKey(board)) {
+            return null;
+        }
+        int[] moves = new int[layer];
+        for (int i = layer; i > 0; i--) {
+            long parent = this.layers.get(i).get(board);
+            moves[i - 1] = diff(parent, board);
+            board = parent;
+        }
+        return moves;
+    }
+
+    /**
+     * Rebuild a solution to the starting board.
+     *
+     * @return the moves of a solution, or null if there is none
+     */
+    public int[] solution() {
+        for (long end : this.ends) {
+            if (PackedBoard.count(end) == 1) {
+                return pathTo(end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Work out the move that turned one board into another. The emptied
+     * square is the one that moved, but a capture of a piece of the same
+     * kind leaves no other square changed, so each capture from it is
+     * replayed to find the one that gives the child.
+     *
+     * @param parent the board before the move
+     * @param child the board after the move
+     * @return the encoded move
+     */
+    private static int diff(long parent, long child) {
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            if (PackedBoard.code(parent, from) == 0 || PackedBoard.code(child, from) != 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(parent, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (PackedBoard.makeMove(parent, from, to) == child) {
+                    return Move.encode(from / SoltrChessModel.COLS, from % SoltrChessModel.COLS,
+                            to / SoltrChessModel.COLS, to % SoltrChessModel.COLS);
+                }
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Stop the threads the search expands layers with.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Run a search from a game file and print each layer and a solution.
+     *
+     * @param args [0] game file, [1] optional number of threads
+     * @throws FileNotFoundException if the game file cannot be read
+     * @throws InterruptedException if interrupted while searching
+     */
+    public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java FrontierSearch game-file [threads]");
+            System.exit(1);
+        }
+        long start = PackedBoard.pack(new SoltrChessModel(args[0]));
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        FrontierSearch search = new FrontierSearch(threads);
+        long begin = System.nanoTime();
+        search.run(start);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        search.shutdown();
+
+        System.out.println("layer  pieces      boards  dead ends        ms");
+        int pieces = PackedBoard.count(start);
+        for (int layer = 0; layer < search.getLayers(); layer++) {
+            System.out.printf("%5d %7d %11d %10d %9.2f%n", layer, pieces - layer, search.getLayerSize(layer),
+                    search.getDeadEnds(layer), search.getLayerMillis(layer));
+        }
+        System.out.println(search.getEndStates().length + " end states, " + millis + " ms on " + threads + " threads");
+        int[] solution = search.solution();
+        if (solution == null) {
+            System.out.println("No solution");
+        } else {
+            for (int move : solution) {
+                System.out.println(Move.toString(move));
+            }
+        }
+    }
+}
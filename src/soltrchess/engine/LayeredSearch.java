@@ -0,0 +1,255 @@
+package soltrchess.engine;
+
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breadth first search of every board reachable from a starting board,
+ * one layer per number of pieces, kept on disk. Every capture removes one
+ * piece, so the children of a layer are exactly the next layer, and each
+ * layer only has to be read once to build the next.
+ *
+ * The forward pass writes each layer as a sorted file of distinct packed
+ * boards, along with the edges into it. An edge is the child board shifted
+ * up EDGE_BITS bits, with the move and the piece it took below, so edges
+ * sort by child and the parent can be rebuilt from them. The backward pass
+ * then works out which boards of each layer are solvable by merging the
+ * edges into a layer with the solvable boards of that layer, which gives
+ * the solvable parents.
+ *
+ * Everything goes through ExternalSorter, so memory use is bounded by the
+ * buffer size however large the layers get.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class LayeredSearch {
+    /** the number of bits of an edge below the child board */
+    private static final int EDGE_BITS = 11;
+
+    /** the directory the layer files are written to */
+    private final Path dir;
+    /** the number of longs each sorter holds in memory */
+    private final int bufferLongs;
+    /** the number of boards in each layer, indexed by number of pieces */
+    private long[] reachable;
+    /** the number of solvable boards in each layer, indexed by number of pieces */
+    private long[] solvable;
+
+    /**
+     * Create a search.
+     *
+     * @param dir the directory to write the layer files to
+     * @param bufferLongs the number of longs each sorter holds in memory
+     */
+    public LayeredSearch(Path dir, int bufferLongs) {
+        this.dir = dir;
+        this.bufferLongs = bufferLongs;
+    }
+
+    /**
+     * Get the file holding the boards of a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the file
+     */
+    public Path layer(int pieces) {
+        return this.dir.resolve("layer" + pieces + ".bin");
+    }
+
+    /**
+     * Get the file holding the solvable boards of a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the file
+     */
+    public Path solvableLayer(int pieces) {
+        return this.dir.resolve("solvable" + pieces + ".bin");
+    }
+
+    /**
+     * Get the file holding the edges into a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the file
+     */
+    private Path edges(int pieces) {
+        return this.dir.resolve("edges" + pieces + ".bin");
+    }
+
+    /**
+     * Get the number of boards in a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the number of reachable boards with that many pieces
+     */
+    public long getReachable(int pieces) {
+        return this.reachable[pieces];
+    }
+
+    /**
+     * Get the number of solvable boards in a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the number of reachable, solvable boards with that many pieces
+     */
+    public long getSolvable(int pieces) {
+        return this.solvable[pieces];
+    }
+
+    /**
+     * Search every board reachable from a starting board and work out which
+     * of them are solvable. The layer files are left in the directory.
+     *
+     * @param start the packed starting board
+     * @return whether or not the starting board is solvable
+     * @throws IOException if a layer file cannot be read or written
+     */
+    public boolean run(long start) throws IOException {
+        int pieces = PackedBoard.count(start);
+        this.reachable = new long[pieces + 1];
+        this.solvable = new long[pieces + 1];
+        if (pieces == 0) {
+            return false;
+        }
+        try (DataOutputStream out = ExternalSorter.open(layer(pieces))) {
+            out.writeLong(start);
+        }
+        this.reachable[pieces] = 1;
+
+        for (int p = pieces; p > 1; p--) {
+            this.reachable[p - 1] = expand(p);
+        }
+
+        Files.copy(layer(1), solvableLayer(1), StandardCopyOption.REPLACE_EXISTING);
+        this.solvable[1] = this.reachable[1];
+        for (int p = 2; p <= pieces; p++) {
+            this.solvable[p] = solve(p);
+            Files.deleteIfExists(edges(p - 1));
+        }
+        return this.solvable[pieces] > 0;
+    }
+
+    /**
+     * Write the next layer, and the edges into it, from a layer.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the number of boards in the next layer
+     * @throws IOException if a layer file cannot be read or written
+     */
+    private long expand(int pieces) throws IOException {
+        ExternalSorter children = new ExternalSorter(this.dir, "layer" + (pieces - 1), this.bufferLongs);
+        ExternalSorter edges = new ExternalSorter(this.dir, "edges" + (pieces - 1), this.bufferLongs);
+        try (ExternalSorter.Reader in = new ExternalSorter.Reader(layer(pieces))) {
+            while (in.hasNext()) {
+                long board = in.next();
+                for (int from = 0; from < MoveTables.SQUARES; from++) {
+                    if (PackedBoard.code(board, from) == 0) {
+                        continue;
+                    }
+                    int targets = MoveTables.captureMask(board, from);
+                    while (targets != 0) {
+                        int to = Integer.numberOfTrailingZeros(targets);
+                        targets &= targets - 1;
+                        long child = PackedBoard.makeMove(board, from, to);
+                        children.add(child);
+                        edges.add(child << EDGE_BITS | from << 7 | to << 3 | PackedBoard.code(board, to));
+                    }
+                }
+            }
+        }
+        edges.finish(edges(pieces - 1));
+        return children.finish(layer(pieces - 1));
+    }
+
+    /**
+     * Write the solvable boards of a layer by merging the edges out of it
+     * with the solvable boards of the layer below.
+     *
+     * @param pieces the number of pieces on the boards of the layer
+     * @return the number of solvable boards in the layer
+     * @throws IOException if a layer file cannot be read or written
+     */
+    private long solve(int pieces) throws IOException {
+        ExternalSorter parents = new ExternalSorter(this.dir, "solvable" + pieces, this.bufferLongs);
+        try (ExternalSorter.Reader edges = new ExternalSorter.Reader(edges(pieces - 1));
+             ExternalSorter.Reader below = new ExternalSorter.Reader(solvableLayer(pieces - 1))) {
+            while (edges.hasNext() && below.hasNext()) {
+                long edge = edges.peek();
+                long child = edge >>> EDGE_BITS;
+                long good = below.peek();
+                if (child < good) {
+                    edges.next();
+                } else if (child > good) {
+                    below.next();
+                } else {
+                    edges.next();
+                    parents.add(parent(edge));
+                }
+            }
+        }
+        return parents.finish(solvableLayer(pieces));
+    }
+
+    /**
+     * Rebuild the board an edge came from.
+     *
+     * @param edge the edge
+     * @return the packed parent board
+     */
+    private static long parent(long edge) {
+        long child = edge >>> EDGE_BITS;
+        int from = (int) (edge >>> 7 & 0xF);
+        int to = (int) (edge >>> 3 & 0xF);
+        long captured = edge & PackedBoard.SQUARE_MASK;
+        long mover = PackedBoard.code(child, to);
+        long parent = child & ~(PackedBoard.SQUARE_MASK << (PackedBoard.BITS * to));
+        parent |= captured << (PackedBoard.BITS * to);
+        return parent | mover << (PackedBoard.BITS * from);
+    }
+
+    /**
+     * Run a layered search from a game file and print each layer.
+     *
+     * @param args [0] game file, [1] optional number of longs held in memory
+     *             by each sorter, [2] optional directory for the layer files
+     *             (a temporary directory, deleted afterwards, if not given)
+     * @throws IOException if the game file or a layer file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: java LayeredSearch game-file [buffer-longs] [directory]");
+            System.exit(1);
+        }
+        long start = PackedBoard.pack(new SoltrChessModel(args[0]));
+        int bufferLongs = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 20;
+        boolean temporary = args.length < 3;
+        Path dir = temporary ? Files.createTempDirectory("soltrchess-layers") : Files.createDirectories(Path.of(args[2]));
+
+        LayeredSearch search = new LayeredSearch(dir, bufferLongs);
+        long begin = System.nanoTime();
+        boolean solvable = search.run(start);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        int pieces = PackedBoard.count(start);
+        System.out.println("pieces  reachable   solvable");
+        for (int p = pieces; p >= 1; p--) {
+            System.out.printf("%6d %10d %10d%n", p, search.getReachable(p), search.getSolvable(p));
+        }
+        System.out.println((solvable ? "Solvable" : "Not solvable") + " (" + millis + " ms)");
+
+        if (temporary) {
+            for (int p = 1; p <= pieces; p++) {
+                Files.deleteIfExists(search.layer(p));
+                Files.deleteIfExists(search.solvableLayer(p));
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package soltrchess.engine;
+
+import soltrchess.model.PackedBoard;
+import soltrchess.model.PieceMoves;
+import soltrchess.model.SoltrChessModel;
+
+/**
+ * Precomputed movement tables for packed boards (see PackedBoard). They
+ * are compiled from the same PieceMoves spec SoltrChessModel.isValidMove()
+ * follows, including pawns only capturing upward, but answer each question
+ * with a few table lookups and bit operations instead of walking the board.
+ *
+ * For every (from, to) pair of squares the tables hold which pieces could
+ * reach to from from on an empty board, which of those only reach it by a
+ * ride, and the packed bits of the squares the ride passes. A capture is
+ * legal if the piece on from can reach to, to is occupied, and, for a ride,
+ * none of the squares in between are. Every piece is looked up the same
+ * way, so a piece added to the spec costs nothing extra.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class MoveTables {
+    /** the number of squares on the board */
+    public static final int SQUARES = PackedBoard.SQUARES;
+
+    /** bit c is set if the piece with packed code c can reach to from from, indexed by from * SQUARES + to */
+    static final int[] REACH = new int[SQUARES * SQUARES];
+    /** bit c is set if the piece with packed code c only reaches to from from by a ride, indexed by from * SQUARES + to */
+    static final int[] RIDES = new int[SQUARES * SQUARES];
+    /** the packed bits of the squares a ride from from to to passes, indexed by from * SQUARES + to */
+    static final long[] BETWEEN = new long[SQUARES * SQUARES];
+
+    static {
+        for (int from = 0; from < SQUARES; from++) {
+            for (int to = 0; to < SQUARES; to++) {
+                int index = from * SQUARES + to;
+                int fromRow = from / SoltrChessModel.COLS;
+                int fromCol = from % SoltrChessModel.COLS;
+                int rows = to / SoltrChessModel.COLS - fromRow;
+                int cols = to % SoltrChessModel.COLS - fromCol;
+                for (SoltrChessModel.Piece piece : SoltrChessModel.Piece.values()) {
+                    int steps = from == to ? 0 : PieceMoves.reach(piece, rows, cols);
+                    if (steps > 0) {
+                        REACH[index] |= bit(piece);
+                    }
+                    if (steps > 1) {
+                        // every ride to the same square passes the same squares
+                        RIDES[index] |= bit(piece);
+                        BETWEEN[index] = between(fromRow, fromCol, rows / steps, cols / steps, steps);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Movement tables only hold static helpers.
+     */
+    private MoveTables() {
+    }
+
+    /**
+     * Get the bit for a piece in a REACH or RIDES mask.
+     *
+     * @param piece the piece
+     * @return the bit
+     */
+    private static int bit(SoltrChessModel.Piece piece) {
+        return 1 << PackedBoard.code(piece);
+    }
+
+    /**
+     * Get the packed bits of the squares a ride passes.
+     *
+     * @param fromRow the row the ride starts on
+     * @param fromCol the column the ride starts on
+     * @param rowStep the rows moved by each step
+     * @param colStep the columns moved by each step
+     * @param steps the number of steps
+     * @return the packed bits of every square but the first and last
+     */
+    private static long between(int fromRow, int fromCol, int rowStep, int colStep, int steps) {
+        long mask = 0;
+        for (int step = 1; step < steps; step++) {
+            int square = (fromRow + rowStep * step) * SoltrChessModel.COLS + fromCol + colStep * step;
+            mask |= PackedBoard.SQUARE_MASK << (PackedBoard.BITS * square);
+        }
+        return mask;
+    }
+
+    /**
+     * Is this a valid capture? Gives the same answer as
+     * SoltrChessModel.isValidMove() for the same board.
+     *
+     * @param packed the packed board
+     * @param from the square of the piece to move
+     * @param to the square of the piece to take
+     * @return whether or not the capture is valid
+     */
+    public static boolean isValidMove(long packed, int from, int to) {
+        return valid(packed, from, to) != 0;
+    }
+
+    /**
+     * The branch-free form of isValidMove(), shared with the batch kernels.
+     *
+     * @param packed the packed board
+     * @param from the square of the piece to move
+     * @param to the square of the piece to take
+     * @return 1 if the capture is valid, otherwise 0
+     */
+    static int valid(long packed, int from, int to) {
+        int index = from * SQUARES + to;
+        int piece = PackedBoard.code(packed, from);
+        int target = PackedBoard.code(packed, to);
+        long blockers = packed & BETWEEN[index];
+        int reaches = (REACH[index] >>> piece) & 1;
+        int occupied = (target | -target) >>> 31;
+        int blocked = (int) ((blockers | -blockers) >>> 63) & (RIDES[index] >>> piece);
+        return reaches & occupied & ~blocked & 1;
+    }
+
+    /**
+     * Get every square a piece can capture.
+     *
+     * @param packed the packed board
+     * @param from the square of the piece
+     * @return a mask with bit s set if the piece can capture on square s
+     */
+    public static int captureMask(long packed, int from) {
+        int mask = 0;
+        for (int to = 0; to < SQUARES; to++) {
+            mask |= valid(packed, from, to) << to;
+        }
+        return mask;
+    }
+
+    /**
+     * Count the captures that can be made on a board.
+     *
+     * @param packed the packed board
+     * @return the number of captures, which is the number of successors
+     */
+    public static int countCaptures(long packed) {
+        int count = 0;
+        for (int from = 0; from < SQUARES; from++) {
+            count += Integer.bitCount(captureMask(packed, from));
+        }
+        return count;
+    }
+}
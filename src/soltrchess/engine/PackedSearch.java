@@ -0,0 +1,94 @@
+package soltrchess.engine;
+
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+/**
+ * Depth first search over packed boards (see PackedBoard) using MoveTables.
+ * Boards are passed by value, so nothing is allocated or taken back while
+ * searching. Moves are tried in the same order as SoltrChessConfig
+ * generates them.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class PackedSearch {
+    /**
+     * Packed searches only hold static helpers.
+     */
+    private PackedSearch() {
+    }
+
+    /**
+     * Can a board be solved?
+     *
+     * @param packed the packed board
+     * @return whether or not a sequence of captures leaves a single piece
+     */
+    public static boolean solvable(long packed) {
+        return solvable(packed, PackedBoard.count(packed));
+    }
+
+    /**
+     * Can a board be solved?
+     *
+     * @param packed the packed board
+     * @param pieces the number of pieces on the board
+     * @return whether or not a sequence of captures leaves a single piece
+     */
+    public static boolean solvable(long packed, int pieces) {
+        if (pieces == 1) {
+            return true;
+        }
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            if (PackedBoard.code(packed, from) == 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(packed, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (solvable(PackedBoard.makeMove(packed, from, to), pieces - 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Can a board be solved? Boards already in the table are not searched
+     * again, and every board searched is added to it.
+     *
+     * @param packed the packed board
+     * @param pieces the number of pieces on the board
+     * @param table the results of boards searched so far
+     * @return whether or not a sequence of captures leaves a single piece
+     */
+    public static boolean solvable(long packed, int pieces, TranspositionTable table) {
+        if (pieces == 1) {
+            return true;
+        }
+        int result = TranspositionTable.result(table.probe(packed));
+        if (result != TranspositionTable.UNKNOWN) {
+            return result == TranspositionTable.SOLVABLE;
+        }
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            if (PackedBoard.code(packed, from) == 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(packed, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (solvable(PackedBoard.makeMove(packed, from, to), pieces - 1, table)) {
+                    table.store(packed, TranspositionTable.SOLVABLE, Move.encode(from / SoltrChessModel.COLS,
+                            from % SoltrChessModel.COLS, to / SoltrChessModel.COLS, to % SoltrChessModel.COLS), pieces);
+                    return true;
+                }
+            }
+        }
+        table.store(packed, TranspositionTable.UNSOLVABLE, Move.NONE, pieces);
+        return false;
+    }
+}
@@ -0,0 +1,253 @@
+package soltrchess.engine;
+
+import soltrchess.model.Move;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An open addressing table of search results, keyed by packed board (see
+ * PackedBoard), kept off the heap in direct byte buffers. Nothing is
+ * allocated when storing or probing, so a large table adds no garbage
+ * collection work however full it gets, and its size is limited by memory
+ * rather than by the heap.
+ *
+ * Each entry is two longs: the key xor'd with the data, and the data. An
+ * entry is only believed if the two still xor back to the key being looked
+ * for, so threads can store and probe at the same time without locks; an
+ * entry torn by two threads storing at once simply reads as a miss.
+ *
+ * The data holds the result, the best move, the depth (the number of
+ * pieces on the board, a measure of how much work the result saved) and
+ * the search generation it was stored in. A key may go in any of PROBES
+ * entries starting at its hash. If none of them hold the key or are empty,
+ * the entry left over from an older search, or else the shallowest one, is
+ * replaced.
+ *
+ * Buffers are capped at 1 GB each, so tables larger than 2 GB are split
+ * over several of them.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class TranspositionTable {
+    /** the result of a board that is not in the table */
+    public static final int UNKNOWN = 0;
+    /** the result of a board that cannot be solved */
+    public static final int UNSOLVABLE = 1;
+    /** the result of a board that can be solved */
+    public static final int SOLVABLE = 2;
+
+    /** the number of bytes in an entry */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+    /** log2 of the number of entries in each buffer */
+    private static final int CHUNK_BITS = 26;
+    /** the number of entries a key may be stored in */
+    private static final int PROBES = 4;
+    /** atomic access to the longs of a buffer */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /** the buffers holding the entries */
+    private final ByteBuffer[] chunks;
+    /** the number of entries minus one; the number of entries is a power of 2 */
+    private final long mask;
+    /** the number of bits of hash used to pick an entry */
+    private final int bits;
+    /** the current search generation */
+    private volatile int generation;
+
+    /**
+     * Create a table.
+     *
+     * @param bytes the most memory to use; the table uses the largest power
+     *              of 2 number of entries that fits, and at least 1024
+     */
+    public TranspositionTable(long bytes) {
+        long entries = Long.highestOneBit(Math.max(bytes / ENTRY_BYTES, 1024));
+        this.mask = entries - 1;
+        this.bits = Long.numberOfTrailingZeros(entries);
+        int perChunk = (int) Math.min(entries, 1L << CHUNK_BITS);
+        this.chunks = new ByteBuffer[(int) (entries / perChunk)];
+        for (int i = 0; i < this.chunks.length; i++) {
+            this.chunks[i] = ByteBuffer.allocateDirect(perChunk * ENTRY_BYTES + Long.BYTES - 1).alignedSlice(Long.BYTES);
+        }
+        this.generation = 0;
+    }
+
+    /**
+     * Parse a size such as "512m" or "2g". A plain number is in bytes.
+     *
+     * @param size the size
+     * @return the number of bytes
+     * @throws NumberFormatException if the size cannot be parsed
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toLowerCase();
+        long unit = 1;
+        switch (s.isEmpty() ? ' ' : s.charAt(s.length() - 1)) {
+            case 'k' -> unit = 1L << 10;
+            case 'm' -> unit = 1L << 20;
+            case 'g' -> unit = 1L << 30;
+            default -> {
+                return Long.parseLong(s);
+            }
+        }
+        return Long.parseLong(s.substring(0, s.length() - 1)) * unit;
+    }
+
+    /**
+     * Get the number of entries in the table.
+     *
+     * @return the capacity
+     */
+    public long capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Start a new search generation. Entries stored before this are replaced
+     * first when the table is full.
+     */
+    public void newSearch() {
+        this.generation = (this.generation + 1) & 0xFF;
+    }
+
+    /**
+     * Look a board up.
+     *
+     * @param key the packed board
+     * @return the data stored for the board (see result(), move() and
+     *         depth()), or 0 if it is not in the table
+     */
+    public long probe(long key) {
+        long index = index(key);
+        for (int i = 0; i < PROBES; i++) {
+            long entry = (index + i) & this.mask;
+            ByteBuffer chunk = chunk(entry);
+            int offset = offset(entry);
+            long data = (long) LONGS.getAcquire(chunk, offset + Long.BYTES);
+            long check = (long) LONGS.getAcquire(chunk, offset);
+            if (data != 0 && (check ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Store the result of a board.
+     *
+     * @param key the packed board
+     * @param result SOLVABLE or UNSOLVABLE
+     * @param move the move that solves the board, or Move.NONE
+     * @param depth the number of pieces on the board
+     */
+    public void store(long key, int result, int move, int depth) {
+        int generation = this.generation;
+        long data = (move & 0xFFFFL)
+                | (long) (result & 0x3) << 16
+                | (long) (depth & 0xFF) << 24
+                | (long) generation << 32;
+
+        long index = index(key);
+        long victim = -1;
+        int victimScore = Integer.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            long entry = (index + i) & this.mask;
+            ByteBuffer chunk = chunk(entry);
+            int offset = offset(entry);
+            long old = (long) LONGS.getAcquire(chunk, offset + Long.BYTES);
+            long check = (long) LONGS.getAcquire(chunk, offset);
+            if (old == 0 || (check ^ old) == key) {
+                victim = entry;
+                break;
+            }
+            int score = (int) (old >>> 24 & 0xFF);
+            if ((int) (old >>> 32 & 0xFF) != generation) {
+                score -= 0x100;
+            }
+            if (score < victimScore) {
+                victim = entry;
+                victimScore = score;
+            }
+        }
+        ByteBuffer chunk = chunk(victim);
+        int offset = offset(victim);
+        LONGS.setRelease(chunk, offset + Long.BYTES, data);
+        LONGS.setRelease(chunk, offset, key ^ data);
+    }
+
+    /**
+     * Forget every entry.
+     */
+    public void clear() {
+        for (ByteBuffer chunk : this.chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += Long.BYTES) {
+                LONGS.setRelease(chunk, offset, 0L);
+            }
+        }
+    }
+
+    /**
+     * Get the result held in an entry's data.
+     *
+     * @param data the data returned by probe()
+     * @return UNKNOWN, SOLVABLE or UNSOLVABLE
+     */
+    public static int result(long data) {
+        return (int) (data >>> 16 & 0x3);
+    }
+
+    /**
+     * Get the move held in an entry's data.
+     *
+     * @param data the data returned by probe()
+     * @return the encoded move that solves the board, or Move.NONE
+     */
+    public static int move(long data) {
+        int move = (int) (data & 0xFFFF);
+        return move == 0xFFFF ? Move.NONE : move;
+    }
+
+    /**
+     * Get the depth held in an entry's data.
+     *
+     * @param data the data returned by probe()
+     * @return the number of pieces on the board
+     */
+    public static int depth(long data) {
+        return (int) (data >>> 24 & 0xFF);
+    }
+
+    /**
+     * Get the first entry a key may be stored in.
+     *
+     * @param key the packed board
+     * @return the entry's index
+     */
+    private long index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 29)) >>> (Long.SIZE - this.bits);
+    }
+
+    /**
+     * Get the buffer holding an entry.
+     *
+     * @param entry the entry's index
+     * @return the buffer
+     */
+    private ByteBuffer chunk(long entry) {
+        return this.chunks[(int) (entry >>> CHUNK_BITS)];
+    }
+
+    /**
+     * Get the offset of an entry in its buffer.
+     *
+     * @param entry the entry's index
+     * @return the byte offset
+     */
+    private static int offset(long entry) {
+        return (int) (entry & ((1L << CHUNK_BITS) - 1)) * ENTRY_BYTES;
+    }
+}
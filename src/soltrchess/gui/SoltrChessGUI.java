@@ -9,6 +9,7 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
@@ -18,16 +19,19 @@ import javafx.scene.text.Font;
 import javafx.stage.FileChooser;
 import javafx.stage.Popup;
 import javafx.stage.Stage;
-import soltrchess.backtracking.Backtracker;
-import soltrchess.backtracking.Configuration;
-import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.PreSolver;
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.engine.FewestPieces;
+import soltrchess.journal.GameJournal;
+import soltrchess.model.GameSession;
+import soltrchess.model.Move;
 import soltrchess.model.Observer;
 import soltrchess.model.SoltrChessModel;
 
 import javax.security.auth.Subject;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -38,26 +42,8 @@ import java.util.concurrent.TimeUnit;
  * @author Jesse Burdick-Pless jb4411@g.rit.edu
  */
 public class SoltrChessGUI extends Application implements Observer<SoltrChessModel, SoltrChessModel.Status> {
-    /** bishop image */
-    private Image bishop = new Image(getClass().getResourceAsStream("resources/bishop.png"));
-    /** blue image */
-    private Image blue = new Image(getClass().getResourceAsStream("resources/blue.png"));
-    /** dark image */
-    private Image dark = new Image(getClass().getResourceAsStream("resources/dark.png"));
-    /** king image */
-    private Image king = new Image(getClass().getResourceAsStream("resources/king.png"));
-    /** knight image */
-    private Image knight = new Image(getClass().getResourceAsStream("resources/knight.png"));
-    /** light image */
-    private Image light = new Image(getClass().getResourceAsStream("resources/light.png"));
-    /** pawn image */
-    private Image pawn = new Image(getClass().getResourceAsStream("resources/pawn.png"));
-    /** queen image */
-    private Image queen = new Image(getClass().getResourceAsStream("resources/queen.png"));
-    /** rook image */
-    private Image rook = new Image(getClass().getResourceAsStream("resources/rook.png"));
-    /** white image */
-    private Image white = new Image(getClass().getResourceAsStream("resources/white.png"));
+    /** the images loaded so far, by name; each is only decoded the first time it is shown */
+    private final Map<String, Image> images = new HashMap<>();
 
     /** the Label that stores the current game status */
     private Label statusBar;
@@ -77,14 +63,20 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
     private int selectedRow;
     /** the file chooser */
     private FileChooser fileChooser;
-    /** the current file */
-    private String currentFile;
-    /** current step if solving */
-    private int currentStep;
-    /** the final step number if solving */
-    private int finalStep;
-    /** whether or not the board is currently being solved */
-    private boolean solving;
+    /** the game being played */
+    private GameSession session = new GameSession(16, GameJournal.getDefault(), GameJournal.GUI);
+    /** solves the board in the background before hints and solutions are asked for */
+    private PreSolver presolver = new PreSolver(SoltrChessSolver.getDefault());
+    /** plays back a solution until the player does anything else, or null if none is */
+    private SolvePlayback playback;
+    /** the pieces left by the moves being played back, or 0 if they are a solution */
+    private int bestLeft;
+    /** the delay between solution steps, in milliseconds */
+    private Slider speed;
+    /** the solution step being shown */
+    private Slider position;
+    /** pauses and resumes solution playback */
+    private Button playPause;
     /** whether or not the current file is valid */
     private boolean validFile;
 
@@ -98,80 +90,75 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
     }
 
     /**
-     * A class to represent the buttons used to play solitaire chess.
+     * A class to represent the buttons used to play solitaire chess. Each
+     * button keeps a single ImageView for its piece and only swaps that
+     * view's image when the piece on its square changes.
      */
     private class ChessButton extends Button {
         /** this button's row */
         private int row;
         /** this button's column */
         private int col;
-        /** this button's current piece */
+        /** the piece this button currently shows, null until first drawn */
         private SoltrChessModel.Piece piece;
         /** this button's graphic */
         private StackPane graphic;
+        /** the view showing this button's piece */
+        private ImageView pieceView;
 
         /**
          * A helper function that changes the piece and image of the button
-         * passed in through the parameter.
+         * passed in through the parameter. Nothing is touched if the button
+         * already shows the piece.
          *
          * @param piece the button to have its image and piece changed
          */
         public void changePiece(SoltrChessModel.Piece piece) {
+            if (piece == this.piece) {
+                return;
+            }
             this.piece = piece;
             switch (piece) {
-                case BISHOP -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(bishop));
-                    this.setGraphic(this.graphic);
-                }
-                case KING -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(king));
-                    this.setGraphic(this.graphic);
-                }
-                case KNIGHT -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(knight));
-                    this.setGraphic(this.graphic);
-                }
-                case PAWN -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(pawn));
-                    this.setGraphic(this.graphic);
-                }
-                case QUEEN -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(queen));
-                    this.setGraphic(this.graphic);
-                }
-                case ROOK -> {
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(new ImageView(rook));
-                    this.setGraphic(this.graphic);
-                }
-                default -> {
-                    ImageView pieceImage = new ImageView(blue);
-                    pieceImage.setVisible(false);
-                    this.graphic.getChildren().remove(1);
-                    this.graphic.getChildren().add(pieceImage);
-                    this.setGraphic(this.graphic);
-                }
+                case BISHOP -> this.pieceView.setImage(image("bishop"));
+                case KING -> this.pieceView.setImage(image("king"));
+                case KNIGHT -> this.pieceView.setImage(image("knight"));
+                case PAWN -> this.pieceView.setImage(image("pawn"));
+                case QUEEN -> this.pieceView.setImage(image("queen"));
+                case ROOK -> this.pieceView.setImage(image("rook"));
+                // an empty square keeps a hidden image so its size does not change
+                default -> this.pieceView.setImage(image("blue"));
             }
+            this.pieceView.setVisible(piece != SoltrChessModel.Piece.NONE);
         }
 
         /**
-         * Create a new ConnectButton with no owner and an image of an empty
-         * space.
+         * Create a new ChessButton showing an empty square.
          *
          * @param row this button's row
          * @param col this button's column
+         * @param square the image of the square itself
          */
-        public ChessButton(int row, int col) {
+        public ChessButton(int row, int col, Image square) {
             this.row = row;
             this.col = col;
+            this.pieceView = new ImageView(image("blue"));
+            this.pieceView.setVisible(false);
+            this.graphic = new StackPane(new ImageView(square), this.pieceView);
+            this.setGraphic(this.graphic);
         }
     }
 
+    /**
+     * Get one of the GUI's images, loading it the first time it is needed.
+     *
+     * @param name the image's file name in resources, without .png
+     * @return the image
+     */
+    private Image image(String name) {
+        return this.images.computeIfAbsent(name,
+                n -> new Image(getClass().getResourceAsStream("resources/" + n + ".png")));
+    }
+
     /**
      * A helper function that builds a grid of buttons used as the GUI
      * representation of the board.
@@ -181,29 +168,12 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
     private GridPane makeBoard(SoltrChessModel board) {
         GridPane gridPane = new GridPane();
         //build the grid of buttons
-        boolean color = false;
         for (int row = 0; row < SoltrChessModel.ROWS; row++) {
-            color = !color;
             for (int col = 0; col < SoltrChessModel.COLS; col++) {
-                ChessButton button = new ChessButton(row,col);
-                if (color) {
-                    ImageView pieceImage = new ImageView(blue);
-                    pieceImage.setVisible(false);
-                    button.graphic = new StackPane();
-                    button.graphic.getChildren().addAll(new ImageView(light), pieceImage);
-                    button.setGraphic(button.graphic);
-                    button.changePiece(this.board.getContents(row,col));
-                    color = false;
-                } else {
-                    ImageView pieceImage = new ImageView(blue);
-                    pieceImage.setVisible(false);
-                    button.graphic = new StackPane();
-                    button.graphic.getChildren().addAll(new ImageView(dark), pieceImage);
-                    button.setGraphic(button.graphic);
-                    button.changePiece(this.board.getContents(row,col));
-                    color = true;
-                }
+                ChessButton button = new ChessButton(row, col, image((row + col) % 2 == 0 ? "light" : "dark"));
+                button.changePiece(this.board.getContents(row,col));
                 button.setOnAction(event -> {
+                    endPlayback();
                     if (!this.selected) {
                         if (!this.finished) {
                             this.selected = true;
@@ -215,7 +185,7 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
                         this.selected = false;
                         if (this.board.isValidMove(this.selectedCol, this.selectedRow, button.col, button.row)) {
                             this.statusBar.setText(this.board.getContents(this.selectedRow, this.selectedCol) + " to (" + button.row + "," + button.col + ")");
-                            this.board.makeMove(this.selectedCol, this.selectedRow, button.col, button.row);
+                            this.session.move(Move.encode(this.selectedRow, this.selectedCol, button.row, button.col));
                         } else {
                             this.statusBar.setText("Move not Allowed.");
                         }
@@ -267,23 +237,68 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         newWindow.show();
     }
 
+    /**
+     * Play back moves on the board, replacing any playback already going.
+     *
+     * @param moves the encoded moves
+     */
+    private void play(int[] moves) {
+        if (this.playback != null) {
+            this.playback.pause();
+        }
+        this.playback = new SolvePlayback(this.board, moves, this.speed.getValue());
+        this.position.setMax(moves.length);
+        this.position.setValue(0);
+        this.playPause.setText("Pause");
+        this.playback.play();
+    }
+
+    /**
+     * Stop any playback, keeping the moves it made as moves of the game, so
+     * the player can go on from there or undo them like their own.
+     */
+    private void endPlayback() {
+        if (this.playback == null) {
+            return;
+        }
+        SolvePlayback ended = this.playback;
+        ended.pause();
+        this.playback = null;
+        this.playPause.setText("Play");
+        int[] made = ended.made();
+        // take the moves back and make them again through the session
+        ended.seek(0);
+        this.finished = false;
+        for (int move : made) {
+            this.session.shown(move);
+        }
+    }
+
     /**
      * A helper function that is called to restart the game.
      *
      * @param filename the file that contains the current board.
      */
     public void restart(String filename) {
-        this.solving = false;
+        String[] filenameParts = filename.split("/");
+        String shortName = filenameParts[filenameParts.length - 1];
         try {
-            this.board = new SoltrChessModel(filename);
+            this.session.load(filename);
         } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            // the current game goes on
+            this.statusBar.setText("Cannot read " + shortName);
+            return;
         }
+        if (this.playback != null) {
+            this.playback.pause();
+            this.playback = null;
+            this.playPause.setText("Play");
+        }
+        this.board = this.session.getBoard();
         this.finished = false;
         this.selected = false;
         this.board.addObserver(this);
-        String[] filenameParts = filename.split("/");
-        String shortName = filenameParts[filenameParts.length - 1];
+        this.presolver.watch(this.board);
         this.statusBar.setText("Game file: " + shortName);
         this.validFile = true;
         if (this.board.getGameStatus() == SoltrChessModel.Status.SOLVED) {
@@ -309,19 +324,19 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         //create the border pane that holds the board and status info
         BorderPane borderPane = new BorderPane();
         //create the board
-        this.board = new SoltrChessModel(getParameters().getRaw().get(0));
+        this.session.load(getParameters().getRaw().get(0));
+        this.board = this.session.getBoard();
         this.board.addObserver(this);
+        this.presolver.watch(this.board);
 
         //initialize variables
         this.selected = false;
         this.finished = false;
         this.buttonBoard = new ChessButton[SoltrChessModel.ROWS][SoltrChessModel.COLS];
-        this.currentFile = getParameters().getRaw().get(0);
-        this.solving = false;
         this.validFile = true;
 
         //create the status bar
-        String[] filenameParts = this.currentFile.split("/");
+        String[] filenameParts = this.session.getCurrentFile().split("/");
         String shortName = filenameParts[filenameParts.length - 1];
         this.statusBar = new Label("Game file: " + shortName);
         if (this.board.getGameStatus() == SoltrChessModel.Status.SOLVED) {
@@ -342,64 +357,143 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         Button newGame = new Button("New Game");
         newGame.setOnAction(event -> {
             File selectedFile = fileChooser.showOpenDialog(stage);
-            this.currentFile = selectedFile.toString();
-            this.restart(this.currentFile);
+            if (selectedFile != null) {
+                this.restart(selectedFile.toString());
+            }
         });
         this.controlButtons.getChildren().add(newGame);
         //create restart button
         Button restart = new Button("Restart");
         restart.setOnAction(event -> {
-            this.restart(this.currentFile);
+            this.restart(this.session.getCurrentFile());
         });
         this.controlButtons.getChildren().add(restart);
         //create hint button
         Button hint = new Button("Hint");
         hint.setOnAction(event -> {
-            if (!this.finished && !this.solving) {
-                Backtracker solver = new Backtracker();
-                List<Configuration> solution = solver.solveWithPath(new SoltrChessConfig(new SoltrChessModel(this.board), this.board.getPieceBoard()));
+            endPlayback();
+            if (!this.finished) {
+                int[] solution = this.presolver.solve(this.session.snapshot());
                 if (solution != null) {
-                    solution.remove(0);
-                    SoltrChessConfig configBoard = (SoltrChessConfig) solution.get(0);
-                    this.board = configBoard.getBoard();
-                    this.board.addObserver(this);
                     this.statusBar.setText("Next move: ");
-                    this.update(this.board, this.board.getGameStatus());
+                    this.session.hint(solution[0]);
                 } else {
-                    this.statusBar.setText("No solution");
+                    FewestPieces.Result best = FewestPieces.solve(this.session.snapshot().getPacked());
+                    if (best.moves.length > 0) {
+                        this.statusBar.setText("No solution (best leaves " + best.pieces + "). Next move: ");
+                        this.session.hint(best.moves[0]);
+                    } else {
+                        this.statusBar.setText("No solution (no capture leaves fewer than " + best.pieces + ")");
+                    }
                 }
-            } else if (this.validFile && !this.solving){
+            } else if (this.validFile){
                 this.statusBar.setText("You've already won.");
-            } else if (!this.solving) {
-                this.restart(this.currentFile);
+            } else {
+                this.restart(this.session.getCurrentFile());
             }
         });
         this.controlButtons.getChildren().add(hint);
         //create solve button
         Button solve = new Button("Solve");
         solve.setOnAction(event -> {
+            endPlayback();
             if (!this.finished) {
                 //solve with path
-                this.solving = true;
-                Backtracker solver = new Backtracker();
-                List<Configuration> solution = solver.solveWithPath(new SoltrChessConfig(new SoltrChessModel(this.board), this.board.getPieceBoard()));
+                int[] solution = this.presolver.solve(this.session.snapshot());
                 if (solution != null) {
-                    this.finalStep = solution.size();
-                    Solver guiSolve = new Solver(this, solution);
-                    guiSolve.start();
+                    this.session.revealed(solution);
+                    this.bestLeft = 0;
+                    this.play(solution);
                 } else {
-                    this.statusBar.setText("No solution");
+                    // play back the moves that leave the fewest pieces instead
+                    FewestPieces.Result best = FewestPieces.solve(this.session.snapshot().getPacked());
+                    this.session.revealed(best.moves);
+                    this.bestLeft = best.pieces;
+                    if (best.moves.length > 0) {
+                        this.play(best.moves);
+                    }
+                    this.statusBar.setText("No solution (best leaves " + best.pieces + ")");
                 }
             } else if (this.validFile){
                 this.statusBar.setText("You've already won.");
             } else {
-                this.restart(this.currentFile);
+                this.restart(this.session.getCurrentFile());
             }
         });
         this.controlButtons.getChildren().add(solve);
+        //create undo and redo buttons
+        Button undo = new Button("Undo");
+        undo.setOnAction(event -> {
+            endPlayback();
+            if (this.session.canUndo()) {
+                this.finished = false;
+                this.selected = false;
+                int move = this.session.undo();
+                this.statusBar.setText("Undid (" + Move.toRow(move) + "," + Move.toCol(move) + ")");
+            }
+        });
+        Button redo = new Button("Redo");
+        redo.setOnAction(event -> {
+            endPlayback();
+            if (this.session.canRedo()) {
+                this.selected = false;
+                int move = this.session.redo();
+                if (!this.finished) {
+                    this.statusBar.setText("Redid (" + Move.toRow(move) + "," + Move.toCol(move) + ")");
+                }
+            }
+        });
+        this.controlButtons.getChildren().addAll(undo, redo);
         //add control buttons to the borderpane
         this.controlButtons.setAlignment(Pos.CENTER);
-        borderPane.setBottom(this.controlButtons);
+
+        //create the solution playback controls
+        HBox playbackControls = new HBox();
+        Button back = new Button("<");
+        back.setOnAction(event -> {
+            if (this.playback != null) {
+                this.playback.pause();
+                this.playback.stepBack();
+            }
+        });
+        this.playPause = new Button("Play");
+        this.playPause.setOnAction(event -> {
+            if (this.playback != null) {
+                if (this.playback.isPlaying()) {
+                    this.playback.pause();
+                    this.playPause.setText("Play");
+                } else {
+                    this.playback.play();
+                    this.playPause.setText("Pause");
+                }
+            }
+        });
+        Button forward = new Button(">");
+        forward.setOnAction(event -> {
+            if (this.playback != null) {
+                this.playback.pause();
+                this.playback.stepForward();
+            }
+        });
+        this.position = new Slider(0, 0, 0);
+        this.position.setMajorTickUnit(1);
+        this.position.setMinorTickCount(0);
+        this.position.setSnapToTicks(true);
+        this.position.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (this.playback != null) {
+                this.playback.seek((int) Math.round(newValue.doubleValue()));
+            }
+        });
+        //a delay of 0 plays the whole solution at once
+        this.speed = new Slider(0, 2000, 1000);
+        this.speed.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (this.playback != null) {
+                this.playback.setDelay(newValue.doubleValue());
+            }
+        });
+        playbackControls.getChildren().addAll(back, this.playPause, forward, this.position, new Label("delay"), this.speed);
+        playbackControls.setAlignment(Pos.CENTER);
+        borderPane.setBottom(new VBox(this.controlButtons, playbackControls));
 
         // get the grid pane from the helper method
         GridPane gridPane = makeBoard(this.board);
@@ -416,52 +510,6 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         }
     }
 
-    /**
-     * A subclass used to show the steps of the solve function.
-     */
-    private static class Solver extends Thread {
-        /** the javaFX GUI */
-        private SoltrChessGUI gui;
-        /** the steps to solve the current board */
-        private List<Configuration> solution;
-
-        /**
-         * Constructor.
-         *
-         * @param gui the javaFX GUI
-         * @param solution the steps to solve the current board
-         */
-        public Solver(SoltrChessGUI gui, List<Configuration> solution) {
-            this.gui = gui;
-            this.solution = solution;
-        }
-
-        /**
-         * Show the steps of the solve function and update the GUI accordingly.
-         */
-        @Override
-        public void run() {
-            for (int i = 0; i < this.solution.size(); i++) {
-                if (this.gui.solving) {
-                    SoltrChessConfig configBoard = (SoltrChessConfig) this.solution.get(i);
-                    this.gui.board = configBoard.getBoard();
-                    this.gui.board.addObserver(this.gui);
-                    try {
-                        Thread.sleep(1000);
-                        if (this.gui.solving) {
-                            this.gui.currentStep = i + 1;
-                            javafx.application.Platform.runLater(() ->
-                                    this.gui.update(this.gui.board, SoltrChessModel.Status.SOLVING)
-                            );
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * Called by the model, model.SoltrChessModel, whenever there is a state
      * change that needs to be updated by the GUI.
@@ -471,24 +519,25 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
      */
     @Override
     public void update(SoltrChessModel soltrChessModel, SoltrChessModel.Status gameStatus) {
+        // only the squares whose piece changed are redrawn
         for (int row = 0; row < SoltrChessModel.ROWS; row++) {
             for (int col = 0; col < SoltrChessModel.COLS; col++) {
                 this.buttonBoard[row][col].changePiece(this.board.getContents(row, col));
             }
-            if (gameStatus != SoltrChessModel.Status.NOT_OVER && gameStatus != SoltrChessModel.Status.SOLVING) {
-                this.finished = true;
-                if (gameStatus == SoltrChessModel.Status.SOLVED) {
-                    this.statusBar.setText("You won. Congratulations!");
-                }
-            } else if (gameStatus == SoltrChessModel.Status.SOLVING){
-                if (this.solving) {
-                    if (this.currentStep != this.finalStep) {
-                        this.statusBar.setText("STEP " + this.currentStep);
-                    } else {
-                        this.statusBar.setText("You won. Congratulations!");
-                        this.finished = true;
-                    }
-                }
+        }
+        if (gameStatus != SoltrChessModel.Status.NOT_OVER && gameStatus != SoltrChessModel.Status.SOLVING) {
+            this.finished = true;
+            if (gameStatus == SoltrChessModel.Status.SOLVED) {
+                this.statusBar.setText("You won. Congratulations!");
+            }
+        } else if (this.playback != null) {
+            this.statusBar.setText("STEP " + this.playback.getStep()
+                    + (this.bestLeft > 0 ? " (no solution; best leaves " + this.bestLeft + ")" : ""));
+        }
+        if (this.playback != null) {
+            this.position.setValue(this.playback.getStep());
+            if (!this.playback.isPlaying()) {
+                this.playPause.setText("Play");
             }
         }
     }
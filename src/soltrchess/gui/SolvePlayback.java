@@ -0,0 +1,182 @@
+package soltrchess.gui;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+import soltrchess.model.Move;
+import soltrchess.model.SoltrChessModel;
+
+import java.util.Arrays;
+
+/**
+ * Plays a solution back on a board, one move per tick of a JavaFX Timeline.
+ * Every step makes or takes back a single move on the same board, so the
+ * board's observers are told about each step and nothing is copied.
+ *
+ * All methods must be called from the JavaFX thread.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+class SolvePlayback {
+    /** the delay between steps at a rate of 1 */
+    private static final Duration BASE_DELAY = Duration.millis(1000);
+
+    /** the board the solution is played on */
+    private final SoltrChessModel board;
+    /** the moves of the solution */
+    private final int[] moves;
+    /** the piece taken by each move, filled in as moves are made */
+    private final SoltrChessModel.Piece[] captured;
+    /** the timeline that makes one step per tick */
+    private final Timeline timeline;
+    /** the number of moves currently made */
+    private int step;
+    /** the delay between steps in milliseconds; 0 plays everything at once */
+    private double delayMillis;
+
+    /**
+     * Constructor
+     *
+     * @param board the board to play the solution on
+     * @param moves the moves of the solution
+     * @param delayMillis the delay between steps in milliseconds
+     */
+    SolvePlayback(SoltrChessModel board, int[] moves, double delayMillis) {
+        this.board = board;
+        this.moves = moves;
+        this.captured = new SoltrChessModel.Piece[moves.length];
+        this.step = 0;
+        this.timeline = new Timeline(new KeyFrame(BASE_DELAY, event -> {
+            if (!stepForward()) {
+                pause();
+            }
+        }));
+        this.timeline.setCycleCount(Animation.INDEFINITE);
+        setDelay(delayMillis);
+    }
+
+    /**
+     * Get the board the solution is played on.
+     *
+     * @return the board
+     */
+    SoltrChessModel getBoard() {
+        return this.board;
+    }
+
+    /**
+     * Get the number of moves currently made.
+     *
+     * @return the current step
+     */
+    int getStep() {
+        return this.step;
+    }
+
+    /**
+     * Get the number of moves in the solution.
+     *
+     * @return the number of steps
+     */
+    int length() {
+        return this.moves.length;
+    }
+
+    /**
+     * Get the moves currently made.
+     *
+     * @return the first getStep() moves of the solution
+     */
+    int[] made() {
+        return Arrays.copyOf(this.moves, this.step);
+    }
+
+    /**
+     * Is the solution currently playing?
+     *
+     * @return whether or not the timeline is running
+     */
+    boolean isPlaying() {
+        return this.timeline.getStatus() == Animation.Status.RUNNING;
+    }
+
+    /**
+     * Change the delay between steps. A delay of 0 jumps straight to the end
+     * if the solution is playing.
+     *
+     * @param delayMillis the delay in milliseconds
+     */
+    void setDelay(double delayMillis) {
+        this.delayMillis = Math.max(delayMillis, 0);
+        if (this.delayMillis > 0) {
+            this.timeline.setRate(BASE_DELAY.toMillis() / this.delayMillis);
+        } else if (isPlaying()) {
+            pause();
+            seek(this.moves.length);
+        }
+    }
+
+    /**
+     * Start or resume playing from the current step.
+     */
+    void play() {
+        if (this.delayMillis == 0) {
+            seek(this.moves.length);
+        } else if (this.step < this.moves.length) {
+            this.timeline.play();
+        }
+    }
+
+    /**
+     * Stop playing, leaving the board at the current step.
+     */
+    void pause() {
+        this.timeline.stop();
+    }
+
+    /**
+     * Make the next move of the solution.
+     *
+     * @return false if every move has already been made
+     */
+    boolean stepForward() {
+        if (this.step == this.moves.length) {
+            return false;
+        }
+        int move = this.moves[this.step];
+        this.captured[this.step] = this.board.getContents(Move.toRow(move), Move.toCol(move));
+        this.step++;
+        Move.apply(this.board, move);
+        return true;
+    }
+
+    /**
+     * Take back the last move made.
+     *
+     * @return false if no moves have been made
+     */
+    boolean stepBack() {
+        if (this.step == 0) {
+            return false;
+        }
+        this.step--;
+        Move.undo(this.board, this.moves[this.step], this.captured[this.step]);
+        return true;
+    }
+
+    /**
+     * Move to any step of the solution by making or taking back moves.
+     *
+     * @param target the number of moves that should be made
+     */
+    void seek(int target) {
+        target = Math.max(0, Math.min(target, this.moves.length));
+        while (this.step < target) {
+            stepForward();
+        }
+        while (this.step > target) {
+            stepBack();
+        }
+    }
+}
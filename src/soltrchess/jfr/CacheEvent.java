@@ -0,0 +1,29 @@
+package soltrchess.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded for every look up in the solution cache.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+@Name("soltrchess.CacheLookup")
+@Label("Solution Cache Lookup")
+@Category({ "SolitaireChess", "Cache" })
+@Description("A look up of a board in the solution cache")
+@StackTrace(false)
+public class CacheEvent extends Event {
+    /** the board looked up */
+    @Label("Puzzle")
+    @Description("The packed board in hex")
+    public String puzzle;
+
+    /** whether or not the board was in the cache */
+    @Label("Hit")
+    public boolean hit;
+}
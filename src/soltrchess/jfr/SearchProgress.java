@@ -0,0 +1,145 @@
+package soltrchess.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks one running search for the flight recorder. A search bumps its
+ * node count with countNode(), a plain field increment, which is all the hot path pays
+ * whether or not a recording is running. The count is read once a period
+ * to record a SearchProgressEvent, and once at the end for the SolveEvent.
+ *
+ * The periodic samples read the count without synchronization, so they may
+ * lag slightly behind the search; the final count is exact.
+ *
+ * Loading an event class starts up the flight recorder's machinery, which
+ * takes long enough to show in the CLI's startup time. So events are only
+ * created for searches that start after the recorder has been initialized,
+ * by -XX:StartFlightRecording or jcmd JFR.start.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class SearchProgress {
+    /** the searches currently being recorded */
+    private static final Set<SearchProgress> RUNNING = ConcurrentHashMap.newKeySet();
+    /** whether or not the periodic SearchProgressEvent has been set up */
+    private static boolean registered = false;
+
+    /** the solve event, timed from the start of the search, or null if not recording */
+    private final SolveEvent event;
+    /** the solver running the search */
+    private final String solver;
+    /** the puzzle being solved */
+    private final String puzzle;
+    /** the thread running the search */
+    private final Thread thread;
+    /** when the search started, from System.nanoTime() */
+    private final long start;
+    /** the number of boards searched so far */
+    private long nodes;
+
+    /**
+     * Start tracking a search.
+     *
+     * @param solver the solver running the search
+     * @param puzzle the puzzle being solved
+     * @param record whether or not to record events for the search
+     */
+    private SearchProgress(String solver, String puzzle, boolean record) {
+        this.solver = solver;
+        this.puzzle = puzzle;
+        this.thread = Thread.currentThread();
+        this.start = System.nanoTime();
+        this.nodes = 0;
+        if (record) {
+            this.event = new SolveEvent();
+            this.event.solver = solver;
+            this.event.puzzle = puzzle;
+            this.event.begin();
+        } else {
+            this.event = null;
+        }
+    }
+
+    /**
+     * Start tracking a search on this thread.
+     *
+     * @param solver the solver running the search
+     * @param puzzle the puzzle being solved
+     * @return the search's progress, to be ended with end()
+     */
+    public static SearchProgress begin(String solver, String puzzle) {
+        boolean record = FlightRecorder.isInitialized();
+        SearchProgress progress = new SearchProgress(solver, puzzle, record);
+        if (record) {
+            register();
+            RUNNING.add(progress);
+        }
+        return progress;
+    }
+
+    /**
+     * Count one more board searched.
+     *
+     * @return the number of boards searched so far
+     */
+    public long countNode() {
+        return ++this.nodes;
+    }
+
+    /**
+     * Set up the periodic SearchProgressEvent the first time it is needed.
+     */
+    private static synchronized void register() {
+        if (!registered) {
+            FlightRecorder.addPeriodicEvent(SearchProgressEvent.class, SearchProgress::sample);
+            registered = true;
+        }
+    }
+
+    /**
+     * Should events be created at all?
+     *
+     * @return whether or not the flight recorder has been initialized
+     */
+    public static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Stop tracking the search and record its SolveEvent.
+     *
+     * @param moves the moves of the solution found, or -1 if there is none
+     */
+    public void end(int moves) {
+        if (this.event == null) {
+            return;
+        }
+        RUNNING.remove(this);
+        this.event.end();
+        if (this.event.shouldCommit()) {
+            this.event.solved = moves >= 0;
+            this.event.moves = Math.max(moves, 0);
+            this.event.nodes = this.nodes;
+            this.event.commit();
+        }
+    }
+
+    /**
+     * Record a SearchProgressEvent for every running search.
+     */
+    private static void sample() {
+        long now = System.nanoTime();
+        for (SearchProgress progress : RUNNING) {
+            SearchProgressEvent event = new SearchProgressEvent();
+            event.solver = progress.solver;
+            event.puzzle = progress.puzzle;
+            event.searchThread = progress.thread;
+            event.nodes = progress.nodes;
+            event.elapsed = (now - progress.start) / 1_000_000;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package soltrchess.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Recorded periodically for every search still running, with the number of
+ * boards it has searched so far. Nothing is recorded while no search is
+ * running.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+@Name("soltrchess.SearchProgress")
+@Label("Search Progress")
+@Category({ "SolitaireChess", "Solver" })
+@Description("A sample of a running search")
+@Period("1 s")
+@StackTrace(false)
+public class SearchProgressEvent extends Event {
+    /** the solver running the search */
+    @Label("Solver")
+    public String solver;
+
+    /** the puzzle being solved */
+    @Label("Puzzle")
+    public String puzzle;
+
+    /** the thread running the search */
+    @Label("Search Thread")
+    public Thread searchThread;
+
+    /** the number of boards searched so far */
+    @Label("Nodes")
+    public long nodes;
+
+    /** how long the search has been running, in milliseconds */
+    @Label("Elapsed")
+    @Timespan(Timespan.MILLISECONDS)
+    public long elapsed;
+}
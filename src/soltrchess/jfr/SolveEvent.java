@@ -0,0 +1,43 @@
+package soltrchess.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded for every solve, from start to end, with the puzzle, the result
+ * and the number of boards searched. Solves answered from the solution
+ * cache are only recorded as a CacheEvent.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+@Name("soltrchess.Solve")
+@Label("Solve")
+@Category({ "SolitaireChess", "Solver" })
+@Description("A search for a solution to a puzzle")
+@StackTrace(false)
+public class SolveEvent extends Event {
+    /** the solver that ran the search */
+    @Label("Solver")
+    public String solver;
+
+    /** the puzzle that was solved */
+    @Label("Puzzle")
+    @Description("The packed board in hex, or the configuration's hash code")
+    public String puzzle;
+
+    /** whether or not a solution was found */
+    @Label("Solved")
+    public boolean solved;
+
+    /** the number of moves in the solution found */
+    @Label("Moves")
+    public int moves;
+
+    /** the number of boards searched */
+    @Label("Nodes")
+    public long nodes;
+}
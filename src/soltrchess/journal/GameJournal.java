@@ -0,0 +1,284 @@
+package soltrchess.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An append-only journal of how games are played, for working out offline
+ * which puzzles players find hard (see JournalReader). Every event is one
+ * fixed size record written straight into a memory-mapped segment file, so
+ * recording one is a handful of stores: nothing is allocated and nothing
+ * waits for the disk. The operating system writes the pages back in its
+ * own time, including after the program exits.
+ *
+ * Each record is RECORD_BYTES long:
+ *
+ * <pre>
+ *  0 long  time, in milliseconds since the epoch
+ *  8 long  game, the same for every event of one game
+ * 16 long  packed board after the event (see PackedBoard)
+ * 24 short encoded move (see Move), or -1
+ * 26 byte  UI the game is played in
+ * 27 byte  event type
+ * 28 int   milliseconds since the game's previous event
+ * </pre>
+ *
+ * The type is written last and is never 0, so the first record with a type
+ * of 0 marks the end of a segment, whether the segment was closed cleanly
+ * or not. When a segment is full the next one is started. It is created
+ * in the background once the current one is half full, so the thread
+ * recording an event does not wait for the file system. Segment names
+ * start with the time the journal was opened, so a directory can be shared
+ * by any number of programs and read back in order. Only the newest
+ * segments are kept: whenever one is created, the oldest in the directory
+ * are deleted until at most a maximum number are left.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class GameJournal implements AutoCloseable {
+    /** a puzzle was loaded; the board is its starting position */
+    public static final int START = 1;
+    /** the player made a move */
+    public static final int MOVE = 2;
+    /** the player took back a move; the move is the one taken back */
+    public static final int UNDO = 3;
+    /** the player made a move taken back again */
+    public static final int REDO = 4;
+    /** the player asked for a hint and its move was made */
+    public static final int HINT = 5;
+    /** the player asked to be shown the solution, or the best moves if there is none; the move is the first */
+    public static final int SOLVE = 6;
+
+    /** games played in the PTUI */
+    public static final int PTUI = 1;
+    /** games played in the GUI */
+    public static final int GUI = 2;
+    /** games played by a script */
+    public static final int SCRIPT = 3;
+
+    /** the size of a record */
+    public static final int RECORD_BYTES = 32;
+    /** the default size of a segment, in bytes */
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+    /** the default largest number of segments kept in a directory */
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    /** the journal shared by the UIs, or null if it is off */
+    private static GameJournal shared;
+    /** whether or not the shared journal has been asked for */
+    private static boolean opened;
+
+    /** the directory the segments are written to */
+    private final Path dir;
+    /** the size of a segment, a multiple of RECORD_BYTES */
+    private final int segmentBytes;
+    /** the largest number of segments kept in the directory */
+    private final int maxSegments;
+    /** creates segments and deletes old ones in the background */
+    private final ExecutorService creator;
+    /** the time the journal was opened, which starts the segment names and game numbers */
+    private final long openedAt;
+    /** the number of segments started */
+    private int segments;
+    /** the segment being written */
+    private MappedByteBuffer segment;
+    /** where the next record goes in the segment */
+    private int position;
+    /** the segment to write once this one is full, or null if it has not been started */
+    private Future<MappedByteBuffer> next;
+    /** the file of the next segment */
+    private Path nextFile;
+    /** the number of games started */
+    private int games;
+
+    /**
+     * Open a journal, starting a new segment in a directory.
+     *
+     * @param dir the directory, created if it does not exist
+     * @param segmentBytes the size of each segment, rounded down to whole records
+     * @param maxSegments the largest number of segments to keep in the directory
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public GameJournal(Path dir, int segmentBytes, int maxSegments) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = Math.max(segmentBytes / RECORD_BYTES, 1) * RECORD_BYTES;
+        this.maxSegments = Math.max(maxSegments, 1);
+        this.openedAt = System.currentTimeMillis();
+        this.creator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-segments");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.segment = create(this.dir.resolve(name(this.segments++)));
+        this.position = 0;
+        this.creator.submit(this::prune);
+    }
+
+    /**
+     * Get the journal shared by the UIs. It is written to the directory
+     * named by the soltrchess.journal property, or ~/.soltrchess/journal if
+     * it is not set; a value of "off" turns it off. The number of segments
+     * kept comes from the soltrchess.journal.segments property.
+     *
+     * @return the shared journal, or null if it is off or cannot be opened
+     */
+    public static synchronized GameJournal getDefault() {
+        if (!opened) {
+            opened = true;
+            String defaultPath = Path.of(System.getProperty("user.home"), ".soltrchess", "journal").toString();
+            String dir = System.getProperty("soltrchess.journal", defaultPath);
+            if (!dir.equals("off")) {
+                try {
+                    int maxSegments = Integer.getInteger("soltrchess.journal.segments", DEFAULT_MAX_SEGMENTS);
+                    shared = new GameJournal(Path.of(dir), DEFAULT_SEGMENT_BYTES, maxSegments);
+                } catch (IOException e) {
+                    System.err.println("Game journal unavailable: " + e.getMessage());
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Get the name of one of this journal's segments.
+     *
+     * @param number the number of segments started before it
+     * @return the file name
+     */
+    private String name(int number) {
+        return String.format("journal-%013d-%d-%06d.seg", this.openedAt, ProcessHandle.current().pid(), number);
+    }
+
+    /**
+     * Create and map a segment.
+     *
+     * @param file the segment file
+     * @return the mapped segment
+     * @throws IOException if the segment cannot be created
+     */
+    private MappedByteBuffer create(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentBytes);
+        }
+    }
+
+    /**
+     * Start creating the next segment in the background.
+     */
+    private void startNext() {
+        Path file = this.dir.resolve(name(this.segments++));
+        this.nextFile = file;
+        this.next = this.creator.submit(() -> {
+            MappedByteBuffer mapped = create(file);
+            prune();
+            return mapped;
+        });
+    }
+
+    /**
+     * Delete the oldest segments in the directory, by any program, until at
+     * most maxSegments are left. A segment that cannot be deleted is left.
+     */
+    private void prune() {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(this.dir)) {
+            files = list.filter(file -> file.getFileName().toString().matches("journal-.*\\.seg"))
+                    .sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            return;
+        }
+        for (int i = 0; i < files.size() - this.maxSegments; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                // another program may be deleting it too
+            }
+        }
+    }
+
+    /**
+     * Get a number for a new game, different from every other game in the
+     * directory unless two journals are opened in the same millisecond.
+     *
+     * @return the game number
+     */
+    public synchronized long newGame() {
+        return this.openedAt << 20 | (++this.games & 0xFFFFF);
+    }
+
+    /**
+     * Record an event. If a new segment is needed and cannot be created the
+     * event is dropped, since losing an event is better than stopping a game.
+     *
+     * @param time the time of the event, in milliseconds since the epoch
+     * @param game the game number
+     * @param ui the UI the game is played in
+     * @param type the event type
+     * @param move the encoded move, or -1
+     * @param board the packed board after the event
+     * @param think the milliseconds since the game's previous event
+     */
+    public synchronized void record(long time, long game, int ui, int type, int move, long board, int think) {
+        if (this.segment == null) {
+            return;
+        }
+        if (this.next == null && this.position >= this.segmentBytes / 2) {
+            startNext();
+        }
+        if (this.position == this.segmentBytes) {
+            try {
+                this.segment = this.next.get();
+            } catch (ExecutionException e) {
+                System.err.println("Game journal stopped: " + e.getCause().getMessage());
+                this.segment = null;
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.next = null;
+            this.position = 0;
+        }
+        MappedByteBuffer out = this.segment;
+        int at = this.position;
+        out.putLong(at, time);
+        out.putLong(at + 8, game);
+        out.putLong(at + 16, board);
+        out.putShort(at + 24, (short) move);
+        out.put(at + 26, (byte) ui);
+        out.putInt(at + 28, think);
+        out.put(at + 27, (byte) type);
+        this.position = at + RECORD_BYTES;
+    }
+
+    /**
+     * Write the current segment to disk and stop recording. A next segment
+     * that was never written to is deleted.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.segment != null) {
+            this.segment.force();
+            this.segment = null;
+        }
+        if (this.next != null) {
+            Path unused = this.nextFile;
+            this.creator.submit(() -> Files.deleteIfExists(unused));
+            this.next = null;
+        }
+        this.creator.shutdown();
+    }
+}
@@ -0,0 +1,295 @@
+package soltrchess.journal;
+
+import soltrchess.model.PackedBoard;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads back the records of a GameJournal directory, segment by segment in
+ * the order they were written. The reader is a cursor: next() moves to the
+ * following record and the getters read its fields straight from the
+ * mapped segment, so reading a whole journal allocates nothing per record.
+ *
+ * Run on its own it sums up the games in a journal, overall and for each
+ * puzzle, so it is easy to see which puzzles players give up on.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class JournalReader implements AutoCloseable {
+    /** the letter for each piece, indexed by packed code */
+    private static final char[] LETTERS = { '-', 'B', 'K', 'N', 'P', 'Q', 'R' };
+    /** the names of the UIs, indexed by their number */
+    private static final String[] UIS = { "?", "ptui", "gui", "script" };
+
+    /** the segments, in the order they were written */
+    private final List<Path> files;
+    /** the index of the next segment to map */
+    private int nextFile;
+    /** the segment being read, or null before the first record */
+    private MappedByteBuffer segment;
+    /** where the current record starts in the segment */
+    private int position;
+
+    /**
+     * Open every segment in a journal directory.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory cannot be listed
+     */
+    public JournalReader(Path dir) throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            this.files = list.filter(file -> file.getFileName().toString().matches("journal-.*\\.seg"))
+                    .sorted().collect(Collectors.toList());
+        }
+        this.nextFile = 0;
+        this.segment = null;
+        this.position = -GameJournal.RECORD_BYTES;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false if there are no records left
+     * @throws IOException if a segment cannot be read
+     */
+    public boolean next() throws IOException {
+        this.position += GameJournal.RECORD_BYTES;
+        while (this.segment == null || this.position + GameJournal.RECORD_BYTES > this.segment.capacity()
+                || this.segment.get(this.position + 27) == 0) {
+            if (this.nextFile == this.files.size()) {
+                this.segment = null;
+                return false;
+            }
+            try (FileChannel channel = FileChannel.open(this.files.get(this.nextFile++))) {
+                this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            this.position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Get the time of the current record.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return this.segment.getLong(this.position);
+    }
+
+    /**
+     * Get the game of the current record.
+     *
+     * @return the game number
+     */
+    public long getGame() {
+        return this.segment.getLong(this.position + 8);
+    }
+
+    /**
+     * Get the board after the current record's event.
+     *
+     * @return the packed board
+     */
+    public long getBoard() {
+        return this.segment.getLong(this.position + 16);
+    }
+
+    /**
+     * Get the move of the current record.
+     *
+     * @return the encoded move, or -1
+     */
+    public int getMove() {
+        return this.segment.getShort(this.position + 24);
+    }
+
+    /**
+     * Get the UI of the current record.
+     *
+     * @return one of GameJournal's UI numbers
+     */
+    public int getUi() {
+        return this.segment.get(this.position + 26);
+    }
+
+    /**
+     * Get the type of the current record.
+     *
+     * @return one of GameJournal's event types
+     */
+    public int getType() {
+        return this.segment.get(this.position + 27);
+    }
+
+    /**
+     * Get how long the player took before the current record's event.
+     *
+     * @return the milliseconds since the game's previous event
+     */
+    public int getThink() {
+        return this.segment.getInt(this.position + 28);
+    }
+
+    @Override
+    public void close() {
+        this.segment = null;
+        this.nextFile = this.files.size();
+    }
+
+    /** the totals of one game, or of every game of a puzzle */
+    private static class Totals {
+        /** the number of games */
+        private long games;
+        /** the number of games the player won without being shown the solution */
+        private long solved;
+        /** the number of games the player was shown the solution of */
+        private long revealed;
+        /** the number of moves made, not counting hints */
+        private long moves;
+        /** the number of hints */
+        private long hints;
+        /** the number of moves taken back */
+        private long undos;
+        /** the number of moves made again */
+        private long redos;
+        /** the milliseconds taken before each move */
+        private long think;
+        /** the starting board */
+        private long start;
+        /** the UI the game was played in */
+        private int ui;
+        /** the board after the latest event */
+        private long board;
+
+        /**
+         * Add the totals of a finished game.
+         *
+         * @param game the game
+         */
+        private void add(Totals game) {
+            this.games++;
+            if (game.revealed > 0) {
+                this.revealed++;
+            } else if (PackedBoard.count(game.board) == 1) {
+                this.solved++;
+            }
+            this.moves += game.moves;
+            this.hints += game.hints;
+            this.undos += game.undos;
+            this.redos += game.redos;
+            this.think += game.think;
+        }
+
+        /**
+         * Get the number of games given up on: neither won nor shown the solution.
+         *
+         * @return the number of abandoned games
+         */
+        private long abandoned() {
+            return this.games - this.solved - this.revealed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d %6d %8d %9d %6d %5d %5d %5d %9.1f", this.games, this.solved, this.revealed,
+                    abandoned(), this.moves, this.hints, this.undos, this.redos,
+                    this.moves == 0 ? 0.0 : this.think / 1000.0 / this.moves);
+        }
+    }
+
+    /**
+     * Write a packed board as its 16 squares in row order.
+     *
+     * @param board the packed board
+     * @return the squares as B, K, N, P, Q, R or -
+     */
+    private static String squares(long board) {
+        StringBuilder text = new StringBuilder();
+        for (int square = 0; square < PackedBoard.SQUARES; square++) {
+            text.append(LETTERS[PackedBoard.code(board, square)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Sum up the games in a journal.
+     *
+     * @param args [0] the journal directory; ~/.soltrchess/journal if not given
+     * @throws IOException if the journal cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 1) {
+            System.err.println("Usage: java JournalReader [journal-directory]");
+            System.exit(1);
+        }
+        Path dir = args.length == 1 ? Path.of(args[0]) : Path.of(System.getProperty("user.home"), ".soltrchess", "journal");
+        Map<Long, Totals> games = new HashMap<>();
+        long records = 0;
+        try (JournalReader in = new JournalReader(dir)) {
+            while (in.next()) {
+                records++;
+                Totals game = games.computeIfAbsent(in.getGame(), key -> new Totals());
+                switch (in.getType()) {
+                    case GameJournal.START -> {
+                        game.start = in.getBoard();
+                        game.ui = in.getUi();
+                    }
+                    case GameJournal.MOVE -> {
+                        game.moves++;
+                        game.think += in.getThink();
+                    }
+                    case GameJournal.UNDO -> game.undos++;
+                    case GameJournal.REDO -> game.redos++;
+                    case GameJournal.HINT -> game.hints++;
+                    case GameJournal.SOLVE -> game.revealed++;
+                    default -> {
+                    }
+                }
+                game.board = in.getBoard();
+            }
+        }
+
+        Totals all = new Totals();
+        Map<String, Totals> byUi = new LinkedHashMap<>();
+        Map<Long, Totals> byPuzzle = new HashMap<>();
+        for (String ui : UIS) {
+            byUi.put(ui, new Totals());
+        }
+        for (Totals game : games.values()) {
+            all.add(game);
+            byUi.get(UIS[game.ui >= 0 && game.ui < UIS.length ? game.ui : 0]).add(game);
+            byPuzzle.computeIfAbsent(game.start, key -> new Totals()).add(game);
+        }
+
+        String header = " games solved revealed abandoned  moves hints undos redos  s/move";
+        System.out.println(records + " records");
+        System.out.println(String.format("%-16s", "ui") + header);
+        System.out.println(String.format("%-16s", "all") + all);
+        for (Map.Entry<String, Totals> entry : byUi.entrySet()) {
+            if (entry.getValue().games > 0) {
+                System.out.println(String.format("%-16s", entry.getKey()) + entry.getValue());
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("%-16s", "puzzle") + header);
+        List<Map.Entry<Long, Totals>> puzzles = new ArrayList<>(byPuzzle.entrySet());
+        // the puzzles given up on most often first
+        puzzles.sort((a, b) -> Double.compare((double) b.getValue().abandoned() / b.getValue().games,
+                (double) a.getValue().abandoned() / a.getValue().games));
+        for (Map.Entry<Long, Totals> entry : puzzles) {
+            System.out.println(squares(entry.getKey()) + entry.getValue());
+        }
+    }
+}
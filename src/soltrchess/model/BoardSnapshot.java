@@ -0,0 +1,142 @@
+package soltrchess.model;
+
+/**
+ * An immutable copy of the pieces on a board. It only holds the packed
+ * board (see PackedBoard), so making one is cheap and it can be shared
+ * between threads, used as a map key or kept in a cache without copying or
+ * locking. Making a move gives a new snapshot and leaves this one alone.
+ *
+ * Snapshots are what solvers, caches and the server pass around; a
+ * SoltrChessModel is only needed to play a game, and toModel() gives a
+ * fresh one whenever it is.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class BoardSnapshot {
+    /** the packed pieces */
+    private final long packed;
+
+    /**
+     * Constructor
+     *
+     * @param packed the packed pieces
+     */
+    private BoardSnapshot(long packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Take a snapshot of a board.
+     *
+     * @param board the board, which is not changed
+     * @return the snapshot
+     */
+    public static BoardSnapshot of(SoltrChessModel board) {
+        return new BoardSnapshot(board.getPacked());
+    }
+
+    /**
+     * Get the snapshot of a packed board.
+     *
+     * @param packed the packed board
+     * @return the snapshot
+     */
+    public static BoardSnapshot ofPacked(long packed) {
+        return new BoardSnapshot(packed);
+    }
+
+    /**
+     * Get the packed pieces.
+     *
+     * @return the packed board
+     */
+    public long getPacked() {
+        return this.packed;
+    }
+
+    /**
+     * Get the piece at a row and column.
+     *
+     * @param row the row
+     * @param col the column
+     * @return the piece
+     */
+    public SoltrChessModel.Piece getContents(int row, int col) {
+        return PackedBoard.get(this.packed, row * SoltrChessModel.COLS + col);
+    }
+
+    /**
+     * Get the number of pieces on the board.
+     *
+     * @return the number of pieces
+     */
+    public int getNumPieces() {
+        return PackedBoard.count(this.packed);
+    }
+
+    /**
+     * Get a new array of the pieces on the board.
+     *
+     * @return the pieces, indexed by row then column
+     */
+    public SoltrChessModel.Piece[][] getPieceBoard() {
+        SoltrChessModel.Piece[][] pieces = new SoltrChessModel.Piece[SoltrChessModel.ROWS][SoltrChessModel.COLS];
+        for (int row = 0; row < SoltrChessModel.ROWS; row++) {
+            for (int col = 0; col < SoltrChessModel.COLS; col++) {
+                pieces[row][col] = getContents(row, col);
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Get the snapshot after a move.
+     *
+     * @rit.pre the move must be valid
+     * @param move the encoded move
+     * @return the snapshot after the capture
+     */
+    public BoardSnapshot apply(int move) {
+        return new BoardSnapshot(PackedBoard.makeMove(this.packed, Move.from(move), Move.to(move)));
+    }
+
+    /**
+     * Make a board holding these pieces, which the caller is free to change.
+     *
+     * @return a new board
+     */
+    public SoltrChessModel toModel() {
+        return new SoltrChessModel(this);
+    }
+
+    /**
+     * Two snapshots are equal if they hold the same pieces in the same places.
+     *
+     * @param o the object to compare to
+     * @return whether or not the snapshots are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BoardSnapshot && this.packed == ((BoardSnapshot) o).packed;
+    }
+
+    /**
+     * hashCode() method
+     *
+     * @return a hash code based on the packed pieces
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.packed * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Returns a string representation of the board, the same as the board's.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        return toModel().toString();
+    }
+}
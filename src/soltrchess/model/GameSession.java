@@ -0,0 +1,219 @@
+package soltrchess.model;
+
+import soltrchess.journal.GameJournal;
+
+import java.io.FileNotFoundException;
+
+/**
+ * A game being played interactively: the board, the moves made on it and
+ * the puzzle it started from. This is the only mutable state the UIs need,
+ * and it belongs to whichever thread runs the UI. Anything handed to
+ * another thread, such as a board to solve, should be a snapshot().
+ *
+ * If the session has a GameJournal, loading a puzzle, every move, undo and
+ * redo, and every hint and solution the player asks for is recorded in it.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class GameSession {
+    /** the starting positions of recently played puzzles */
+    private final PuzzleCache puzzles;
+    /** the moves made in the current game */
+    private final MoveHistory history;
+    /** the game board, or null if no file has been read yet */
+    private SoltrChessModel board;
+    /** the current file */
+    private String currentFile;
+    /** where the game's events are recorded, or null if they are not */
+    private final GameJournal journal;
+    /** the UI the game is played in, as a GameJournal UI number */
+    private final int ui;
+    /** the journal's number for the current game */
+    private long game;
+    /** the time of the game's latest event, in milliseconds since the epoch */
+    private long lastEvent;
+
+    /**
+     * Create a session with no game loaded, whose events are not recorded.
+     *
+     * @param puzzles the number of starting positions to keep
+     */
+    public GameSession(int puzzles) {
+        this(puzzles, null, 0);
+    }
+
+    /**
+     * Create a session with no game loaded.
+     *
+     * @param puzzles the number of starting positions to keep
+     * @param journal where to record the game's events, or null
+     * @param ui the UI the game is played in, as a GameJournal UI number
+     */
+    public GameSession(int puzzles, GameJournal journal, int ui) {
+        this.puzzles = new PuzzleCache(puzzles);
+        this.history = new MoveHistory();
+        this.journal = journal;
+        this.ui = ui;
+    }
+
+    /**
+     * Record an event of the current game.
+     *
+     * @param type the GameJournal event type
+     * @param move the encoded move, or Move.NONE
+     */
+    private void record(int type, int move) {
+        if (this.journal != null) {
+            long now = System.currentTimeMillis();
+            int think = (int) Math.min(now - this.lastEvent, Integer.MAX_VALUE);
+            this.journal.record(now, this.game, this.ui, type, move, this.board.getPacked(), think);
+            this.lastEvent = now;
+        }
+    }
+
+    /**
+     * Start a game from a file, forgetting every move. The board is a new
+     * one, so observers of the old board have to be added to it again.
+     *
+     * @param filename the game file
+     * @throws FileNotFoundException if the file cannot be read; the game
+     *                               already loaded, if any, is kept
+     */
+    public void load(String filename) throws FileNotFoundException {
+        SoltrChessModel board = this.puzzles.load(filename);
+        this.currentFile = filename;
+        this.history.clear();
+        this.board = board;
+        if (this.journal != null) {
+            this.game = this.journal.newGame();
+            this.lastEvent = System.currentTimeMillis();
+            record(GameJournal.START, Move.NONE);
+        }
+    }
+
+    /**
+     * Start the current game again.
+     *
+     * @throws FileNotFoundException if the file can no longer be read
+     */
+    public void restart() throws FileNotFoundException {
+        load(this.currentFile);
+    }
+
+    /**
+     * Get the game board.
+     *
+     * @return the board, or null if no file has been read yet
+     */
+    public SoltrChessModel getBoard() {
+        return this.board;
+    }
+
+    /**
+     * Get the current file.
+     *
+     * @return the name of the file the game was loaded from
+     */
+    public String getCurrentFile() {
+        return this.currentFile;
+    }
+
+    /**
+     * Take a snapshot of the board as it is now, which is safe to give to
+     * other threads.
+     *
+     * @rit.pre getBoard() != null
+     * @return the snapshot
+     */
+    public BoardSnapshot snapshot() {
+        return BoardSnapshot.of(this.board);
+    }
+
+    /**
+     * Make a move and remember it. Any moves that could have been redone
+     * are forgotten.
+     *
+     * @rit.pre the move must be valid
+     * @param move the encoded move
+     */
+    public void move(int move) {
+        this.history.make(this.board, move);
+        record(GameJournal.MOVE, move);
+    }
+
+    /**
+     * Make the move of a hint the player asked for, and remember it.
+     *
+     * @rit.pre the move must be valid
+     * @param move the encoded move
+     */
+    public void hint(int move) {
+        this.history.make(this.board, move);
+        record(GameJournal.HINT, move);
+    }
+
+    /**
+     * Make a move of a solution the player was shown, and remember it so it
+     * can be undone. It is not recorded, since revealed() recorded the
+     * solution.
+     *
+     * @rit.pre the move must be valid
+     * @param move the encoded move
+     */
+    public void shown(int move) {
+        this.history.make(this.board, move);
+    }
+
+    /**
+     * Note that the player was shown a solution to the board, or, if it has
+     * none, the moves that leave the fewest pieces. The board itself is not
+     * changed.
+     *
+     * @param solution the moves shown
+     */
+    public void revealed(int[] solution) {
+        record(GameJournal.SOLVE, solution.length == 0 ? Move.NONE : solution[0]);
+    }
+
+    /**
+     * Can a move be undone?
+     *
+     * @return whether or not any moves have been made
+     */
+    public boolean canUndo() {
+        return this.board != null && this.history.canUndo();
+    }
+
+    /**
+     * Can a move be redone?
+     *
+     * @return whether or not any moves have been undone since the last move
+     */
+    public boolean canRedo() {
+        return this.board != null && this.history.canRedo();
+    }
+
+    /**
+     * Take back the last move made.
+     *
+     * @rit.pre canUndo()
+     * @return the encoded move that was taken back
+     */
+    public int undo() {
+        int move = this.history.undo(this.board);
+        record(GameJournal.UNDO, move);
+        return move;
+    }
+
+    /**
+     * Make the last move taken back again.
+     *
+     * @rit.pre canRedo()
+     * @return the encoded move that was made
+     */
+    public int redo() {
+        int move = this.history.redo(this.board);
+        record(GameJournal.REDO, move);
+        return move;
+    }
+}
@@ -0,0 +1,141 @@
+package soltrchess.model;
+
+/**
+ * Helpers for the compact int encoding of a capture move. The index of the
+ * square being moved from is kept in the second byte and the index of the
+ * square being captured in the low byte, where a square's index is
+ * row * COLS + col.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class Move {
+    /** used when there is no move, e.g. for the starting configuration */
+    public static final int NONE = -1;
+
+    /**
+     * Moves only hold static helpers.
+     */
+    private Move() {
+    }
+
+    /**
+     * Encode a move.
+     *
+     * @param fromRow the row of the piece to move
+     * @param fromCol the column of the piece to move
+     * @param toRow the row of the piece being taken
+     * @param toCol the column of the piece being taken
+     * @return the encoded move
+     */
+    public static int encode(int fromRow, int fromCol, int toRow, int toCol) {
+        return ((fromRow * SoltrChessModel.COLS + fromCol) << 8) | (toRow * SoltrChessModel.COLS + toCol);
+    }
+
+    /**
+     * Get the index of the square being moved from.
+     *
+     * @param move the encoded move
+     * @return the source square index
+     */
+    public static int from(int move) {
+        return (move >>> 8) & 0xFF;
+    }
+
+    /**
+     * Get the index of the square being captured.
+     *
+     * @param move the encoded move
+     * @return the destination square index
+     */
+    public static int to(int move) {
+        return move & 0xFF;
+    }
+
+    /**
+     * Get the row of the piece being moved.
+     *
+     * @param move the encoded move
+     * @return the source row
+     */
+    public static int fromRow(int move) {
+        return from(move) / SoltrChessModel.COLS;
+    }
+
+    /**
+     * Get the column of the piece being moved.
+     *
+     * @param move the encoded move
+     * @return the source column
+     */
+    public static int fromCol(int move) {
+        return from(move) % SoltrChessModel.COLS;
+    }
+
+    /**
+     * Get the row of the piece being taken.
+     *
+     * @param move the encoded move
+     * @return the destination row
+     */
+    public static int toRow(int move) {
+        return to(move) / SoltrChessModel.COLS;
+    }
+
+    /**
+     * Get the column of the piece being taken.
+     *
+     * @param move the encoded move
+     * @return the destination column
+     */
+    public static int toCol(int move) {
+        return to(move) % SoltrChessModel.COLS;
+    }
+
+    /**
+     * Make a move on a board.
+     *
+     * @rit.pre the move must be valid
+     * @param board the board
+     * @param move the encoded move
+     */
+    public static void apply(SoltrChessModel board, int move) {
+        board.makeMove(fromCol(move), fromRow(move), toCol(move), toRow(move));
+    }
+
+    /**
+     * Take back the last move made on a board.
+     *
+     * @rit.pre the move must be the last one made
+     * @param board the board
+     * @param move the encoded move
+     * @param captured the piece that was taken
+     */
+    public static void undo(SoltrChessModel board, int move, SoltrChessModel.Piece captured) {
+        board.unmakeMove(fromCol(move), fromRow(move), toCol(move), toRow(move), captured);
+    }
+
+    /**
+     * Make the first moves of a solution on a board, in order.
+     *
+     * @rit.pre the moves must be valid for the board
+     * @param board the board
+     * @param moves the encoded moves
+     * @param count the number of moves to make
+     */
+    public static void replay(SoltrChessModel board, int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            apply(board, moves[i]);
+        }
+    }
+
+    /**
+     * Returns the move as "fromRow fromCol toRow toCol", the same order the
+     * PTUI asks for them in.
+     *
+     * @param move the encoded move
+     * @return the string representation
+     */
+    public static String toString(int move) {
+        return fromRow(move) + " " + fromCol(move) + " " + toRow(move) + " " + toCol(move);
+    }
+}
@@ -0,0 +1,99 @@
+package soltrchess.model;
+
+import java.util.Arrays;
+
+/**
+ * The moves made in a game, kept so they can be undone and redone. Each
+ * entry is an int holding the encoded move (see Move) in its low 16 bits
+ * and the ordinal of the piece it took above that.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class MoveHistory {
+    /** the moves made, followed by the moves that can be redone */
+    private int[] entries;
+    /** the number of moves currently made */
+    private int top;
+    /** the number of moves made plus the number that can be redone */
+    private int size;
+
+    /**
+     * Create an empty history.
+     */
+    public MoveHistory() {
+        this.entries = new int[SoltrChessModel.ROWS * SoltrChessModel.COLS];
+        this.top = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Make a move on a board and remember it. Any moves that could have been
+     * redone are forgotten.
+     *
+     * @rit.pre the move must be valid
+     * @param board the board
+     * @param move the encoded move
+     */
+    public void make(SoltrChessModel board, int move) {
+        if (this.top == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+        }
+        SoltrChessModel.Piece captured = board.getContents(Move.toRow(move), Move.toCol(move));
+        this.entries[this.top++] = (captured.ordinal() << 16) | move;
+        this.size = this.top;
+        Move.apply(board, move);
+    }
+
+    /**
+     * Can a move be undone?
+     *
+     * @return whether or not any moves have been made
+     */
+    public boolean canUndo() {
+        return this.top > 0;
+    }
+
+    /**
+     * Can a move be redone?
+     *
+     * @return whether or not any moves have been undone since the last move
+     */
+    public boolean canRedo() {
+        return this.top < this.size;
+    }
+
+    /**
+     * Take back the last move made.
+     *
+     * @rit.pre canUndo() and the board is the one the moves were made on
+     * @param board the board
+     * @return the encoded move that was taken back
+     */
+    public int undo(SoltrChessModel board) {
+        int entry = this.entries[--this.top];
+        int move = entry & 0xFFFF;
+        Move.undo(board, move, SoltrChessModel.Piece.values()[entry >>> 16]);
+        return move;
+    }
+
+    /**
+     * Make the last move taken back again.
+     *
+     * @rit.pre canRedo() and the board is the one the moves were made on
+     * @param board the board
+     * @return the encoded move that was made
+     */
+    public int redo(SoltrChessModel board) {
+        int move = this.entries[this.top++] & 0xFFFF;
+        Move.apply(board, move);
+        return move;
+    }
+
+    /**
+     * Forget every move.
+     */
+    public void clear() {
+        this.top = 0;
+        this.size = 0;
+    }
+}
@@ -0,0 +1,154 @@
+package soltrchess.model;
+
+/**
+ * Helpers for packing a whole board into a single long. Each square takes
+ * three bits, starting from the low bits with square 0 (row 0, column 0).
+ * An empty square is 0 and any other piece is its ordinal plus one, so two
+ * boards pack to the same long exactly when they hold the same pieces.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class PackedBoard {
+    /** the number of bits used by each square */
+    public static final int BITS = 3;
+    /** the mask for a single square */
+    public static final long SQUARE_MASK = (1L << BITS) - 1;
+    /** the number of squares on the board */
+    public static final int SQUARES = SoltrChessModel.ROWS * SoltrChessModel.COLS;
+    /** the pieces, indexed by their packed code */
+    private static final SoltrChessModel.Piece[] PIECES = new SoltrChessModel.Piece[SoltrChessModel.Piece.values().length];
+
+    static {
+        for (SoltrChessModel.Piece piece : SoltrChessModel.Piece.values()) {
+            PIECES[code(piece)] = piece;
+        }
+    }
+
+    /**
+     * Packed boards only hold static helpers.
+     */
+    private PackedBoard() {
+    }
+
+    /**
+     * Get the packed code of a piece.
+     *
+     * @param piece the piece
+     * @return the code, 0 for an empty square
+     */
+    public static int code(SoltrChessModel.Piece piece) {
+        return piece == SoltrChessModel.Piece.NONE ? 0 : piece.ordinal() + 1;
+    }
+
+    /**
+     * Get the piece with a packed code.
+     *
+     * @param code the code
+     * @return the piece
+     */
+    public static SoltrChessModel.Piece piece(int code) {
+        return PIECES[code];
+    }
+
+    /**
+     * Pack the pieces of a board by reading every square. A board keeps its
+     * packed form up to date as moves are made (see
+     * SoltrChessModel.getPacked()), which is cheaper to get; this is the
+     * reference it is checked against.
+     *
+     * @param board the board
+     * @return the packed board
+     */
+    public static long pack(SoltrChessModel board) {
+        long packed = 0;
+        for (int row = 0; row < SoltrChessModel.ROWS; ++row) {
+            for (int col = 0; col < SoltrChessModel.COLS; ++col) {
+                packed |= (long) code(board.getContents(row, col)) << (BITS * (row * SoltrChessModel.COLS + col));
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Get the packed code of the piece on a square.
+     *
+     * @param packed the packed board
+     * @param square the square index, row * COLS + col
+     * @return the code, 0 for an empty square
+     */
+    public static int code(long packed, int square) {
+        return (int) ((packed >>> (BITS * square)) & SQUARE_MASK);
+    }
+
+    /**
+     * Get the piece on a square.
+     *
+     * @param packed the packed board
+     * @param square the square index, row * COLS + col
+     * @return the piece
+     */
+    public static SoltrChessModel.Piece get(long packed, int square) {
+        return PIECES[code(packed, square)];
+    }
+
+    /**
+     * Put a piece on a square of a packed board.
+     *
+     * @param packed the packed board
+     * @param square the square index, row * COLS + col
+     * @param piece the piece, or NONE to empty the square
+     * @return the packed board with the piece on the square
+     */
+    public static long set(long packed, int square, SoltrChessModel.Piece piece) {
+        return packed & ~(SQUARE_MASK << (BITS * square)) | (long) code(piece) << (BITS * square);
+    }
+
+    /**
+     * Make a capture on a packed board.
+     *
+     * @rit.pre the move must be valid
+     * @param packed the packed board
+     * @param from the square of the piece to move
+     * @param to the square of the piece being taken
+     * @return the packed board after the capture
+     */
+    public static long makeMove(long packed, int from, int to) {
+        long piece = (packed >>> (BITS * from)) & SQUARE_MASK;
+        long cleared = packed & ~(SQUARE_MASK << (BITS * from)) & ~(SQUARE_MASK << (BITS * to));
+        return cleared | (piece << (BITS * to));
+    }
+
+    /**
+     * Mirror a packed board left to right. Every piece moves the same way to
+     * the left as to the right, so a board and its mirror image are solved
+     * by mirrored moves.
+     *
+     * @param packed the packed board
+     * @return the packed mirror image
+     */
+    public static long mirror(long packed) {
+        long mirrored = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            int col = square % SoltrChessModel.COLS;
+            int to = square - col + SoltrChessModel.COLS - 1 - col;
+            mirrored |= (long) code(packed, square) << (BITS * to);
+        }
+        return mirrored;
+    }
+
+    /**
+     * Count the pieces on a packed board.
+     *
+     * @param packed the packed board
+     * @return the number of pieces
+     */
+    public static int count(long packed) {
+        int count = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            if (code(packed, square) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,255 @@
+package soltrchess.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How each piece moves, read once from the pieces.spec resource next to
+ * this class instead of being written out piece by piece. A piece's moves
+ * are a list of steps, each either a leap, which jumps straight to the end
+ * of the step, or a ride, which repeats the step in a straight line and is
+ * blocked by any piece it passes. See pieces.spec for the format.
+ *
+ * SoltrChessModel.isValidMove() follows the steps square by square, and
+ * MoveTables compiles them into lookup tables, so a new piece only needs a
+ * Piece constant, a letter in the game files and a line in the spec. How
+ * each piece reaches every square within a board's width of it is worked
+ * out once from the steps, so reach() is a table lookup.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public final class PieceMoves {
+    /** the name of the spec resource */
+    private static final String SPEC = "pieces.spec";
+
+    /** one step of a piece's moves */
+    private static class Step {
+        /** the rows moved by one step; negative is up the board */
+        private final int rows;
+        /** the columns moved by one step */
+        private final int cols;
+        /** whether or not the step can be repeated */
+        private final boolean ride;
+
+        /**
+         * Constructor
+         *
+         * @param rows the rows moved by one step
+         * @param cols the columns moved by one step
+         * @param ride whether or not the step can be repeated
+         */
+        private Step(int rows, int cols, boolean ride) {
+            this.rows = rows;
+            this.cols = cols;
+            this.ride = ride;
+        }
+    }
+
+    /** the steps of each piece, indexed by ordinal */
+    private static final Step[][] STEPS = load();
+    /** the most rows or columns between two squares on the board */
+    private static final int MAX_DISTANCE = Math.max(SoltrChessModel.ROWS, SoltrChessModel.COLS) - 1;
+    /** the number of distances in each direction, from -MAX_DISTANCE to MAX_DISTANCE */
+    private static final int SPAN = 2 * MAX_DISTANCE + 1;
+    /** reach() of each piece for every move on the board, indexed by ordinal and then by index() */
+    private static final int[][] REACH = reachTable();
+
+    /**
+     * Piece moves only hold static helpers.
+     */
+    private PieceMoves() {
+    }
+
+    /**
+     * Can a piece reach a square on an otherwise empty board, and how?
+     *
+     * @param piece the piece
+     * @param rows the rows from the piece to the square; negative is up
+     * @param cols the columns from the piece to the square
+     * @return 0 if the piece cannot reach the square, 1 if it can in one
+     *         leap or step, which nothing can block, otherwise the number
+     *         of steps of the ride that reaches it; the squares the ride
+     *         passes, each rows / steps and cols / steps on from the last,
+     *         must be empty
+     */
+    public static int reach(SoltrChessModel.Piece piece, int rows, int cols) {
+        if (Math.abs(rows) > MAX_DISTANCE || Math.abs(cols) > MAX_DISTANCE) {
+            return walk(piece, rows, cols);
+        }
+        return REACH[piece.ordinal()][index(rows, cols)];
+    }
+
+    /**
+     * Get where a move is in a piece's row of the reach table.
+     *
+     * @param rows the rows moved, at most MAX_DISTANCE either way
+     * @param cols the columns moved, at most MAX_DISTANCE either way
+     * @return the index
+     */
+    private static int index(int rows, int cols) {
+        return (rows + MAX_DISTANCE) * SPAN + cols + MAX_DISTANCE;
+    }
+
+    /**
+     * Work out reach() for every piece and every move on the board.
+     *
+     * @return the reach of each piece, indexed by ordinal and then by index()
+     */
+    private static int[][] reachTable() {
+        int[][] table = new int[STEPS.length][SPAN * SPAN];
+        for (SoltrChessModel.Piece piece : SoltrChessModel.Piece.values()) {
+            for (int rows = -MAX_DISTANCE; rows <= MAX_DISTANCE; rows++) {
+                for (int cols = -MAX_DISTANCE; cols <= MAX_DISTANCE; cols++) {
+                    table[piece.ordinal()][index(rows, cols)] = walk(piece, rows, cols);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Work out reach() from a piece's steps.
+     *
+     * @param piece the piece
+     * @param rows the rows from the piece to the square; negative is up
+     * @param cols the columns from the piece to the square
+     * @return the same as reach()
+     */
+    private static int walk(SoltrChessModel.Piece piece, int rows, int cols) {
+        int steps = 0;
+        for (Step step : STEPS[piece.ordinal()]) {
+            if (step.ride) {
+                int n = gcd(Math.abs(rows), Math.abs(cols));
+                if (n > 0 && rows / n == step.rows && cols / n == step.cols) {
+                    steps = n;
+                }
+            } else if (rows == step.rows && cols == step.cols) {
+                return 1;
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Get the greatest common divisor of two numbers.
+     *
+     * @param a a number at least 0
+     * @param b a number at least 0
+     * @return the greatest common divisor, 0 if both are 0
+     */
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Read the spec.
+     *
+     * @return the steps of each piece, indexed by ordinal
+     */
+    private static Step[][] load() {
+        List<List<Step>> steps = new ArrayList<>();
+        for (int i = 0; i < SoltrChessModel.Piece.values().length; i++) {
+            steps.add(new ArrayList<>());
+        }
+        InputStream spec = PieceMoves.class.getResourceAsStream(SPEC);
+        if (spec == null) {
+            throw new IllegalStateException(SPEC + " is missing");
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(spec, StandardCharsets.UTF_8))) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                int comment = line.indexOf('#');
+                String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+                if (words[0].isEmpty()) {
+                    continue;
+                }
+                parse(words, steps, SPEC + " line " + number + ": ");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Step[][] table = new Step[steps.size()][];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = steps.get(i).toArray(new Step[0]);
+        }
+        return table;
+    }
+
+    /**
+     * Add the steps on one line of the spec.
+     *
+     * @param words the words on the line
+     * @param steps the steps of each piece so far, indexed by ordinal
+     * @param where the line, for error messages
+     */
+    private static void parse(String[] words, List<List<Step>> steps, String where) {
+        SoltrChessModel.Piece piece;
+        try {
+            piece = SoltrChessModel.Piece.valueOf(words[0]);
+        } catch (IllegalArgumentException e) {
+            piece = SoltrChessModel.Piece.NONE;
+        }
+        if (piece == SoltrChessModel.Piece.NONE) {
+            throw new IllegalArgumentException(where + "no piece named " + words[0]);
+        }
+        if (words.length < 3 || !(words[1].equals("leap") || words[1].equals("ride"))) {
+            throw new IllegalArgumentException(where + "expected PIECE leap|ride ROWS,COLS... [forward]");
+        }
+        boolean ride = words[1].equals("ride");
+        boolean forward = words[words.length - 1].equals("forward");
+        List<Step> pieceSteps = steps.get(piece.ordinal());
+        for (int i = 2; i < words.length - (forward ? 1 : 0); i++) {
+            String[] parts = words[i].split(",");
+            int rows;
+            int cols;
+            try {
+                rows = Math.abs(Integer.parseInt(parts[0]));
+                cols = parts.length == 2 ? Math.abs(Integer.parseInt(parts[1])) : -1;
+            } catch (NumberFormatException e) {
+                cols = -1;
+                rows = -1;
+            }
+            if (rows < 0 || cols < 0 || rows + cols == 0) {
+                throw new IllegalArgumentException(where + "bad step " + words[i]);
+            } else if (ride && gcd(rows, cols) != 1) {
+                throw new IllegalArgumentException(where + "ride step " + words[i] + " is a multiple of a smaller step");
+            }
+            // every direction: the signs flipped and the rows and columns swapped
+            int[][] directions = { { rows, cols }, { cols, rows } };
+            for (int[] direction : directions) {
+                for (int rowSign = -1; rowSign <= 1; rowSign += 2) {
+                    for (int colSign = -1; colSign <= 1; colSign += 2) {
+                        Step step = new Step(rowSign * direction[0], colSign * direction[1], ride);
+                        if (!(forward && step.rows >= 0) && !contains(pieceSteps, step)) {
+                            pieceSteps.add(step);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Is a step already in a list?
+     *
+     * @param steps the list
+     * @param step the step
+     * @return whether or not a step with the same move and kind is in the list
+     */
+    private static boolean contains(List<Step> steps, Step step) {
+        for (Step other : steps) {
+            if (other.rows == step.rows && other.cols == step.cols && other.ride == step.ride) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
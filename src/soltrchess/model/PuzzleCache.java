@@ -0,0 +1,78 @@
+package soltrchess.model;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the starting positions of recently played puzzles so that
+ * restarting or switching back to one does not read and parse its file
+ * again. A file is only read again if its modification time has changed.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class PuzzleCache {
+    /** a parsed starting position and the modification time it was read at */
+    private static class Puzzle {
+        /** the modification time of the file when it was read */
+        private final FileTime modified;
+        /** the starting position, never handed out directly */
+        private final SoltrChessModel start;
+
+        /**
+         * Constructor
+         *
+         * @param modified the modification time of the file when it was read
+         * @param start the starting position
+         */
+        private Puzzle(FileTime modified, SoltrChessModel start) {
+            this.modified = modified;
+            this.start = start;
+        }
+    }
+
+    /** the starting positions, least recently used first */
+    private final LinkedHashMap<String, Puzzle> entries;
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity the number of puzzles to keep
+     */
+    public PuzzleCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Puzzle> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get a fresh board holding the starting position of a puzzle.
+     *
+     * @param filename the puzzle's file
+     * @return a new board, which the caller is free to change
+     * @throws FileNotFoundException if the file cannot be read
+     */
+    public SoltrChessModel load(String filename) throws FileNotFoundException {
+        String key = Path.of(filename).toAbsolutePath().normalize().toString();
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(Path.of(key));
+        } catch (IOException e) {
+            this.entries.remove(key);
+            throw new FileNotFoundException(filename);
+        }
+        Puzzle puzzle = this.entries.get(key);
+        if (puzzle == null || !puzzle.modified.equals(modified)) {
+            puzzle = new Puzzle(modified, new SoltrChessModel(filename));
+            this.entries.put(key, puzzle);
+        }
+        return new SoltrChessModel(puzzle.start);
+    }
+}
@@ -2,9 +2,11 @@ package soltrchess.model;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
 
 /**
  * The model for the Solitaire Chess game.
@@ -37,6 +39,24 @@ public class SoltrChessModel {
         FAILED
     }
 
+    /**
+     * the Zobrist keys, one random number per square and piece; an empty
+     * square has a key of 0 so it never changes the hash
+     */
+    private static final long[][] ZOBRIST = new long[ROWS * COLS][Piece.values().length];
+
+    static {
+        // a fixed seed keeps hashes the same from one run to the next
+        SplittableRandom random = new SplittableRandom(0x50C7C4E55L);
+        for (long[] square : ZOBRIST) {
+            for (Piece piece : Piece.values()) {
+                if (piece != Piece.NONE) {
+                    square[piece.ordinal()] = random.nextLong();
+                }
+            }
+        }
+    }
+
     /** the status of the game */
     private Status status;
     /** the observers of this model */
@@ -53,16 +73,30 @@ public class SoltrChessModel {
     private int moveRow;
     /** the current number of pieces on the board */
     private int numPieces;
+    /** the Zobrist hash of the pieces on the board */
+    private long hash;
+    /** the pieces on the board packed into a long (see PackedBoard) */
+    private long packed;
 
     /**
      * Create a new board.
      */
     public SoltrChessModel(String filename) throws FileNotFoundException {
+        this(new Scanner(new File(filename)));
+    }
+
+    /**
+     * Create a new board by reading its pieces from a scanner. The scanner is
+     * expected to supply the same tokens as a game file, and is closed once
+     * the board has been read.
+     *
+     * @param f the scanner to read the board from
+     */
+    public SoltrChessModel(Scanner f) {
         this.status = Status.NOT_OVER;
         this.board = new Piece[ROWS][COLS];
         this.numPieces = 0;
 
-        Scanner f = new Scanner(new File(filename));
         String next = "";
         // initialize the board
         for (int row=0; row<ROWS; ++row) {
@@ -105,6 +139,8 @@ public class SoltrChessModel {
                     }
                 }
                 this.board[row][col] = current;
+                this.hash ^= ZOBRIST[row * COLS + col][current.ordinal()];
+                this.packed = PackedBoard.set(this.packed, row * COLS + col, current);
             }
         }
         this.observers = new LinkedList<>();
@@ -131,6 +167,33 @@ public class SoltrChessModel {
         this.moveCol = copy.moveCol;
         this.moveRow = copy.moveRow;
         this.numPieces = copy.numPieces;
+        this.hash = copy.hash;
+        this.packed = copy.packed;
+    }
+
+    /**
+     * Create a board holding the pieces of a snapshot.
+     *
+     * @param snapshot the snapshot
+     */
+    public SoltrChessModel(BoardSnapshot snapshot) {
+        this.status = Status.NOT_OVER;
+        this.observers = new LinkedList<>();
+        this.board = new Piece[ROWS][COLS];
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                Piece current = snapshot.getContents(row, col);
+                this.board[row][col] = current;
+                this.hash ^= ZOBRIST[row * COLS + col][current.ordinal()];
+                this.packed = PackedBoard.set(this.packed, row * COLS + col, current);
+                if (current != Piece.NONE) {
+                    this.numPieces++;
+                }
+            }
+        }
+        if (this.numPieces == 1) {
+            this.status = Status.SOLVED;
+        }
     }
 
     /**
@@ -159,12 +222,25 @@ public class SoltrChessModel {
     }
 
     /**
-     * Get the piece board.
+     * Get the number of pieces on the board.
+     *
+     * @return the number of pieces
+     */
+    public int getNumPieces() {
+        return this.numPieces;
+    }
+
+    /**
+     * Get a copy of the piece board. Changing it does not change this board.
      *
      * @return the piece board
      */
     public Piece[][] getPieceBoard() {
-        return this.board;
+        Piece[][] copy = new Piece[ROWS][COLS];
+        for (int r=0; r<ROWS; r++) {
+            System.arraycopy(this.board[r], 0, copy[r], 0, COLS);
+        }
+        return copy;
     }
 
     /**
@@ -178,114 +254,6 @@ public class SoltrChessModel {
         return this.board[row][col];
     }
 
-    /**
-     * Check whether or not there will be a collision when a piece moves
-     *
-     * @param selectedCol the column of the selected piece to move
-     * @param selectedRow the row of the selected piece to move
-     * @param moveCol the column of the space to move to
-     * @param moveRow the row of the space to move to
-     * @param diagonal whether or not to check the diagonal
-     * @return whether or not there is a collision
-     */
-    public boolean hasCollision(int selectedCol, int selectedRow, int moveCol, int moveRow, boolean diagonal) {
-        int currentCol = selectedCol;
-        int currentRow = selectedRow;
-        if (diagonal) {
-            if (moveRow - selectedRow < 0) { //moving up
-                if (moveCol - selectedCol < 0) { //moving up-left
-                    currentCol--;
-                    currentRow--;
-                    while (currentCol > moveCol && currentRow > moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol--;
-                        currentRow--;
-                    }
-                    return true;
-                } else { //moving up-right
-                    currentCol++;
-                    currentRow--;
-                    while (currentCol < moveCol && currentRow > moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol++;
-                        currentRow--;
-                    }
-                    return true;
-                }
-            } else { //moving down
-                if (moveCol - selectedCol < 0) { //moving down-left
-                    currentCol--;
-                    currentRow++;
-                    while (currentCol > moveCol && currentRow < moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol--;
-                        currentRow++;
-                    }
-                    return true;
-                } else { //moving down-right
-                    currentCol++;
-                    currentRow++;
-                    while (currentCol < moveCol && currentRow < moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol++;
-                        currentRow++;
-                    }
-                    return true;
-                }
-            }
-        } else {
-            if (moveCol != selectedCol) { //moving left or right
-                if (selectedCol > moveCol) { //moving left
-                    currentCol--;
-                    while (currentCol > moveCol) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol--;
-                    }
-                    return true;
-                } else { //moving right
-                    currentCol++;
-                    while (currentCol < moveCol) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentCol++;
-                    }
-                    return true;
-                }
-            } else { //moving up or down
-                if (selectedRow > moveRow) { //moving up
-                    currentRow--;
-                    while (currentRow > moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentRow--;
-                    }
-                    return true;
-                } else { //moving down
-                    currentRow++;
-                    while (currentRow < moveRow) {
-                        if (getContents(currentRow, currentCol) != Piece.NONE) {
-                            return false;
-                        }
-                        currentRow++;
-                    }
-                    return true;
-                }
-            }
-        }
-    }
-
     /**
      * Is this a valid move?
      *
@@ -305,75 +273,20 @@ public class SoltrChessModel {
         } else if (this.board[moveRow][moveCol].equals(Piece.NONE)) {
             return false;
         }
-        Piece next = this.board[selectedRow][selectedCol];
-        switch (next) {
-            case BISHOP -> {
-                if (selectedCol == moveCol || selectedRow == moveRow) {
-                    return false;
-                } else {
-                    if (Math.abs(moveRow - selectedRow) == Math.abs(moveCol - selectedCol)) {
-                        return hasCollision(selectedCol, selectedRow, moveCol, moveRow, true);
-                    } else {
-                        return false;
-                    }
-                }
-            }
-            case KING -> {
-                return Math.abs(selectedCol - moveCol) <= 1 && Math.abs(selectedRow - moveRow) <= 1;
-            }
-            case KNIGHT -> {
-                if (selectedCol == moveCol || selectedRow == moveRow) {
-                    return false;
-                } else {
-                    if (Math.abs(moveRow - selectedRow) == 1) {
-                        if (Math.abs(moveCol - selectedCol) == 2) {
-                            return true;
-                        } else {
-                            return false;
-                        }
-                    } else if (Math.abs(moveCol - selectedCol) == 1) {
-                        if (Math.abs(moveRow - selectedRow) == 2) {
-                            return true;
-                        } else {
-                            return false;
-                        }
-                    }
-                }
-            }
-            case PAWN -> {
-                if (selectedCol == moveCol || selectedRow == moveRow) {
+        int rows = moveRow - selectedRow;
+        int cols = moveCol - selectedCol;
+        int steps = PieceMoves.reach(this.board[selectedRow][selectedCol], rows, cols);
+        if (steps > 1) {
+            // a ride is blocked by any piece on the squares it passes
+            int rowStep = rows / steps;
+            int colStep = cols / steps;
+            for (int step = 1; step < steps; step++) {
+                if (this.board[selectedRow + rowStep * step][selectedCol + colStep * step] != Piece.NONE) {
                     return false;
-                } else {
-                    return selectedRow - moveRow == 1 && Math.abs(moveCol - selectedCol) == 1;
                 }
             }
-            case QUEEN -> {
-                if (selectedCol == moveCol || selectedRow == moveRow) {
-                    return hasCollision(selectedCol, selectedRow, moveCol, moveRow, false);
-                } else {
-                    if (Math.abs(moveRow - selectedRow) == Math.abs(moveCol - selectedCol)) {
-                        return hasCollision(selectedCol, selectedRow, moveCol, moveRow, true);
-                    } else {
-                        return false;
-                    }
-                }
-            }
-            case ROOK -> {
-                if (moveCol != selectedCol) {
-                    if (moveRow == selectedRow) {
-                        return hasCollision(selectedCol, selectedRow, moveCol, moveRow, false);
-                    } else {
-                        return false;
-                    }
-                } else {
-                    return hasCollision(selectedCol, selectedRow, moveCol, moveRow, false);
-                }
-            }
-            default -> {
-                return false;
-            }
         }
-        return false;
+        return steps > 0;
     }
 
     /**
@@ -386,7 +299,12 @@ public class SoltrChessModel {
      * @param moveRow the row of the space to move to
      */
     public void makeMove(int selectedCol, int selectedRow, int moveCol, int moveRow) {
-        this.board[moveRow][moveCol] = this.board[selectedRow][selectedCol];
+        Piece moving = this.board[selectedRow][selectedCol];
+        long[] from = ZOBRIST[selectedRow * COLS + selectedCol];
+        long[] to = ZOBRIST[moveRow * COLS + moveCol];
+        this.hash ^= from[moving.ordinal()] ^ to[this.board[moveRow][moveCol].ordinal()] ^ to[moving.ordinal()];
+        this.packed = PackedBoard.makeMove(this.packed, selectedRow * COLS + selectedCol, moveRow * COLS + moveCol);
+        this.board[moveRow][moveCol] = moving;
         this.board[selectedRow][selectedCol] = Piece.NONE;
         this.numPieces--;
 
@@ -399,6 +317,83 @@ public class SoltrChessModel {
         notifyObservers();
     }
 
+    /**
+     * Take back a move made with makeMove().
+     *
+     * @rit.pre the move must be the last one made
+     * @param selectedCol the column the piece was moved from
+     * @param selectedRow the row the piece was moved from
+     * @param moveCol the column the piece was moved to
+     * @param moveRow the row the piece was moved to
+     * @param captured the piece that was taken
+     */
+    public void unmakeMove(int selectedCol, int selectedRow, int moveCol, int moveRow, Piece captured) {
+        Piece moving = this.board[moveRow][moveCol];
+        long[] from = ZOBRIST[selectedRow * COLS + selectedCol];
+        long[] to = ZOBRIST[moveRow * COLS + moveCol];
+        this.hash ^= to[moving.ordinal()] ^ to[captured.ordinal()] ^ from[moving.ordinal()];
+        this.packed = PackedBoard.set(PackedBoard.set(this.packed, selectedRow * COLS + selectedCol, moving),
+                moveRow * COLS + moveCol, captured);
+        this.board[selectedRow][selectedCol] = moving;
+        this.board[moveRow][moveCol] = captured;
+        this.numPieces++;
+
+        if (this.numPieces > 1) {
+            this.status = Status.NOT_OVER;
+        }
+
+        // let the view know a move has been taken back
+        notifyObservers();
+    }
+
+    /**
+     * Get the Zobrist hash of the pieces on the board. It is kept up to date
+     * as moves are made, so getting it does not scan the board.
+     *
+     * @return the hash
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Get the pieces on the board packed into a long, the same as
+     * PackedBoard.pack() gives. It is kept up to date as moves are made, so
+     * getting it does not scan the board.
+     *
+     * @return the packed board
+     */
+    public long getPacked() {
+        return this.packed;
+    }
+
+    /**
+     * Two models are equal if they hold the same pieces in the same places.
+     *
+     * @param o the object to compare to
+     * @return whether or not the boards are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof SoltrChessModel)) {
+            return false;
+        }
+        SoltrChessModel other = (SoltrChessModel) o;
+        return this.hash == other.hash && Arrays.deepEquals(this.board, other.board);
+    }
+
+    /**
+     * hashCode() method
+     *
+     * @return a hash code based on the Zobrist hash
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.hash);
+    }
+
     /**
      * Returns a string representation of the board, suitable for printing out.
      *
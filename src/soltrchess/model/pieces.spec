@@ -0,0 +1,18 @@
+# How each piece moves, read by PieceMoves. Each line gives a piece, a
+# kind of move and one or more steps:
+#
+#   PIECE leap|ride ROWS,COLS... [forward]
+#
+# A leap moves one step and jumps over anything in between. A ride moves
+# any number of steps in a straight line and is blocked by the pieces it
+# passes, so its steps must not be a multiple of a smaller step. Every
+# step is taken in all eight directions (the signs flipped and the rows
+# and columns swapped); forward keeps only the ones moving up the board,
+# toward row 0. A piece may have any number of lines.
+
+BISHOP  ride  1,1
+KING    leap  1,0 1,1
+KNIGHT  leap  1,2
+PAWN    leap  1,1  forward
+QUEEN   ride  1,0 1,1
+ROOK    ride  1,0
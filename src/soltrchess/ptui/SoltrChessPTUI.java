@@ -1,8 +1,11 @@
 package soltrchess.ptui;
 
-import soltrchess.backtracking.Backtracker;
-import soltrchess.backtracking.Configuration;
-import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.PreSolver;
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.engine.FewestPieces;
+import soltrchess.journal.GameJournal;
+import soltrchess.model.GameSession;
+import soltrchess.model.Move;
 import soltrchess.model.Observer;
 import soltrchess.model.SoltrChessModel;
 
@@ -24,8 +27,12 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
     private String currentFile;
     /** whether or not the current file is valid */
     private boolean validFile;
+    /** the game being played */
+    private GameSession session;
+    /** solves the board in the background before hints and solutions are asked for */
+    private PreSolver presolver;
     /** the list of valid commands */
-    private static final ArrayList<String> VALID_COMMANDS = new ArrayList<>(Arrays.asList("move", "new", "restart", "hint", "solve", "quit"));
+    private static final ArrayList<String> VALID_COMMANDS = new ArrayList<>(Arrays.asList("move", "new", "restart", "hint", "solve", "undo", "redo", "quit"));
 
     /**
      * Construct the PTUI.
@@ -34,23 +41,48 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
      */
     public SoltrChessPTUI(String filename) {
         this.currentFile = filename;
-        this.restart(filename);
+        this.session = new GameSession(16, GameJournal.getDefault(), GameJournal.PTUI);
+        this.presolver = new PreSolver(SoltrChessSolver.getDefault());
+        if (!this.restart(filename)) {
+            // there is no game to play, which the commands treat like an invalid file
+            this.validFile = false;
+            this.finished = true;
+        }
+    }
+
+    /**
+     * Print the board after each move of a sequence, without making them.
+     *
+     * @param moves the encoded moves
+     */
+    private void printSteps(int[] moves) {
+        SoltrChessModel step = new SoltrChessModel(this.board);
+        for (int i = 0; i < moves.length; i++) {
+            Move.apply(step, moves[i]);
+            System.out.println("STEP " + (i+1));
+            System.out.println(step.toString());
+        }
     }
 
     /**
      * A helper function that is called to restart the game.
      *
      * @param filename the file that contains the current board.
+     * @return whether or not the file could be read; if not, the current
+     *         game goes on
      */
-    public void restart(String filename) {
+    public boolean restart(String filename) {
         try {
-            this.board = new SoltrChessModel(filename);
+            this.session.load(filename);
         } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            System.out.println("Cannot read " + filename);
+            return false;
         }
+        this.board = this.session.getBoard();
         this.validFile = true;
         this.finished = false;
         this.board.addObserver(this);
+        this.presolver.watch(this.board);
         String[] filenameParts = filename.split("/");
         String shortName = filenameParts[filenameParts.length - 1];
         System.out.println("\nGame File: " + shortName);
@@ -64,6 +96,7 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
             this.finished = true;
         }
         this.update(this.board, SoltrChessModel.Status.NOT_OVER);
+        return true;
     }
 
     /**
@@ -77,7 +110,7 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
         String command = null;
         while (!validCMD) {
             validCMD = true;
-            System.out.print(" [move,new,restart,hint,solve,quit]> ");
+            System.out.print(" [move,new,restart,hint,solve,undo,redo,quit]> ");
             String cmd = in.nextLine();
             if (VALID_COMMANDS.contains(cmd)) {
                 command = cmd;
@@ -110,12 +143,13 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
             moveRow = in.nextInt();
             System.out.print("dest col? ");
             moveCol = in.nextInt();
+            in.nextLine();
             validMove = this.board.isValidMove(selectedCol,selectedRow,moveCol,moveRow);
             if (!validMove) {
                 System.out.print("\nInvalid move.\n");
             } else {
                 System.out.println((this.board.getContents(selectedRow, selectedCol) + " to (" + moveRow + "," + moveCol + ")"));
-                this.board.makeMove(selectedCol,selectedRow,moveCol,moveRow);
+                this.session.move(Move.encode(selectedRow, selectedCol, moveRow, moveCol));
                 //this.update(this.board, this.board.getGameStatus());
             }
         }
@@ -127,8 +161,8 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
      */
     public void run() {
         boolean running = true;
+        Scanner in = new Scanner(System.in);
         while (running) {
-            Scanner in = new Scanner(System.in);
             String cmd = getCommand(in);
             switch (cmd) {
                 case "move" -> {
@@ -141,25 +175,28 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
                 case "new" -> {
                     System.out.print("game file name: ");
                     String newFile = in.nextLine();
-                    this.currentFile = newFile;
-                    this.restart(newFile);
+                    if (this.restart(newFile)) {
+                        this.currentFile = newFile;
+                    }
                 }
                 case "restart" -> {
                     this.restart(this.currentFile);
                 }
                 case "hint" -> {
                     if (!this.finished && this.validFile) {
-                        Backtracker solver = new Backtracker();
-                        List<Configuration> solution = solver.solveWithPath(new SoltrChessConfig(new SoltrChessModel(this.board), this.board.getPieceBoard()));
+                        int[] solution = this.presolver.solve(this.session.snapshot());
                         if (solution != null) {
-                            solution.remove(0);
-                            SoltrChessConfig configBoard = (SoltrChessConfig) solution.get(0);
-                            this.board = configBoard.getBoard();
-                            this.board.addObserver(this);
                             System.out.println("Next move: ");
-                            this.update(this.board, this.board.getGameStatus());
+                            this.session.hint(solution[0]);
                         } else {
-                            System.out.println("No solution");
+                            FewestPieces.Result best = FewestPieces.solve(this.session.snapshot().getPacked());
+                            if (best.moves.length > 0) {
+                                System.out.println("No solution; the fewest pieces you can leave is " + best.pieces
+                                        + ". Next move: ");
+                                this.session.hint(best.moves[0]);
+                            } else {
+                                System.out.println("No solution; no capture leaves fewer than " + best.pieces + " pieces");
+                            }
                         }
                     } else if (this.validFile){
                         System.out.print("You've already won.\n");
@@ -170,18 +207,17 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
                 case "solve" -> {
                     if (!this.finished) {
                         //solve with path
-                        Backtracker solver = new Backtracker();
-                        List<Configuration> solution = solver.solveWithPath(new SoltrChessConfig(new SoltrChessModel(this.board), this.board.getPieceBoard()));
+                        int[] solution = this.presolver.solve(this.session.snapshot());
                         if (solution != null) {
-                            solution.remove(0);
-                            for (int i = 0; i < solution.size(); i++) {
-                                System.out.println("STEP " + (i+1));
-                                System.out.println(solution.get(i).toString());
-                            }
+                            this.session.revealed(solution);
+                            this.printSteps(solution);
                             this.finished = true;
                             System.out.println("You won. Congratulations!");
                         } else {
-                            System.out.println("No solution");
+                            FewestPieces.Result best = FewestPieces.solve(this.session.snapshot().getPacked());
+                            this.session.revealed(best.moves);
+                            this.printSteps(best.moves);
+                            System.out.println("No solution; the fewest pieces you can leave is " + best.pieces);
                         }
                     } else if (this.validFile) {
                         System.out.print("You've already won.\n");
@@ -189,6 +225,21 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, SoltrChessModel
                         System.out.println("Invalid file.");
                     }
                 }
+                case "undo" -> {
+                    if (this.session.canUndo()) {
+                        this.finished = false;
+                        this.session.undo();
+                    } else {
+                        System.out.println("Nothing to undo.");
+                    }
+                }
+                case "redo" -> {
+                    if (this.session.canRedo()) {
+                        this.session.redo();
+                    } else {
+                        System.out.println("Nothing to redo.");
+                    }
+                }
                 case "quit" -> {
                     running = false;
                 }
@@ -0,0 +1,320 @@
+package soltrchess.ptui;
+
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.journal.GameJournal;
+import soltrchess.model.GameSession;
+import soltrchess.model.Move;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs PTUI commands from a script instead of a player, for replaying
+ * recorded sessions and load testing the game. Commands are read one per
+ * line, with no prompts, and all of a command's arguments on the same line:
+ *
+ * <pre>
+ * new game-file | restart | move r c r c | hint | solve | undo | redo | quit
+ * </pre>
+ *
+ * Blank lines and lines starting with # are skipped. Each command writes
+ * exactly one line, either
+ *
+ * <pre>
+ * ok command [move...] status pieces board
+ * error message
+ * </pre>
+ *
+ * where each move is "r c r c", and board is the 16 squares in row order
+ * as B, K, N, P, Q, R or -. If the game file to start with cannot be read,
+ * an error line saying so comes first, and there is no game until a new
+ * one is loaded. Output is buffered and only flushed at the end,
+ * or when the script asks for it with "flush".
+ *
+ * Scripts are not players, so their games are only recorded in the game
+ * journal if the soltrchess.journal.script property is true.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SoltrChessScript {
+    /** the letter for each piece, indexed by ordinal */
+    private static final char[] LETTERS = { 'B', 'K', 'N', 'P', 'Q', 'R', '-' };
+
+    /** where the results are written */
+    private final PrintWriter out;
+    /** the game being played */
+    private final GameSession session;
+    /** the result being built for the current command */
+    private final StringBuilder line;
+
+    /**
+     * Create a script runner.
+     *
+     * @param filename the game file to start with
+     * @param out where to write the results
+     */
+    public SoltrChessScript(String filename, PrintWriter out) {
+        this.out = out;
+        GameJournal journal = Boolean.getBoolean("soltrchess.journal.script") ? GameJournal.getDefault() : null;
+        this.session = new GameSession(64, journal, GameJournal.SCRIPT);
+        this.line = new StringBuilder();
+        if (!load(filename)) {
+            this.out.append("error cannot read ").append(filename).append('\n');
+        }
+    }
+
+    /**
+     * Load a game file, forgetting every move.
+     *
+     * @param filename the game file
+     * @return whether or not the file could be read
+     */
+    private boolean load(String filename) {
+        try {
+            this.session.load(filename);
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Run every command from a reader.
+     *
+     * @param in the commands
+     * @return the number of commands run
+     * @throws IOException if the commands cannot be read
+     */
+    public long run(BufferedReader in) throws IOException {
+        long count = 0;
+        String command;
+        while ((command = in.readLine()) != null) {
+            command = command.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            if (command.equals("quit")) {
+                break;
+            }
+            count++;
+            execute(command);
+        }
+        this.out.flush();
+        return count;
+    }
+
+    /**
+     * Run one command and write its result.
+     *
+     * @param command the command and its arguments
+     */
+    public void execute(String command) {
+        String[] parts = command.split("\\s+");
+        this.line.setLength(0);
+        String error = switch (parts[0]) {
+            case "new" -> parts.length != 2 ? "usage: new game-file"
+                    : load(parts[1]) ? null : "cannot read " + parts[1];
+            case "restart" -> this.session.getCurrentFile() == null ? "no game loaded"
+                    : load(this.session.getCurrentFile()) ? null : "cannot read " + this.session.getCurrentFile();
+            case "move" -> move(parts);
+            case "hint" -> hint();
+            case "solve" -> solve();
+            case "undo" -> undo();
+            case "redo" -> redo();
+            case "flush" -> {
+                this.out.flush();
+                yield null;
+            }
+            default -> "unknown command " + parts[0];
+        };
+        if (error != null) {
+            this.out.append("error ").append(error).append('\n');
+            return;
+        }
+        this.out.append("ok ").append(parts[0]).append(this.line);
+        SoltrChessModel board = this.session.getBoard();
+        if (board != null) {
+            this.out.append(' ').append(board.getGameStatus().name()).append(' ')
+                    .append(Integer.toString(board.getNumPieces())).append(' ');
+            for (int row = 0; row < SoltrChessModel.ROWS; row++) {
+                for (int col = 0; col < SoltrChessModel.COLS; col++) {
+                    this.out.append(LETTERS[board.getContents(row, col).ordinal()]);
+                }
+            }
+        }
+        this.out.append('\n');
+    }
+
+    /**
+     * Check that there is a game that can still be played.
+     *
+     * @return an error, or null if moves can be made
+     */
+    private String playable() {
+        SoltrChessModel board = this.session.getBoard();
+        if (board == null) {
+            return "no game loaded";
+        } else if (board.getGameStatus() == SoltrChessModel.Status.INVALID_FILE) {
+            return "invalid file";
+        } else if (board.getGameStatus() == SoltrChessModel.Status.SOLVED) {
+            return "already won";
+        }
+        return null;
+    }
+
+    /**
+     * Add a move to the result of the current command.
+     *
+     * @param move the encoded move
+     */
+    private void report(int move) {
+        this.line.append(' ').append(Move.toString(move));
+    }
+
+    /**
+     * Make a move.
+     *
+     * @param parts the command and its arguments
+     * @return an error, or null if the move was made
+     */
+    private String move(String[] parts) {
+        String error = playable();
+        if (error != null) {
+            return error;
+        } else if (parts.length != 5) {
+            return "usage: move r c r c";
+        }
+        int fromRow;
+        int fromCol;
+        int toRow;
+        int toCol;
+        try {
+            fromRow = Integer.parseInt(parts[1]);
+            fromCol = Integer.parseInt(parts[2]);
+            toRow = Integer.parseInt(parts[3]);
+            toCol = Integer.parseInt(parts[4]);
+        } catch (NumberFormatException e) {
+            return "usage: move r c r c";
+        }
+        if (!onBoard(fromRow, fromCol) || !onBoard(toRow, toCol)
+                || !this.session.getBoard().isValidMove(fromCol, fromRow, toCol, toRow)) {
+            return "invalid move";
+        }
+        int move = Move.encode(fromRow, fromCol, toRow, toCol);
+        this.session.move(move);
+        report(move);
+        return null;
+    }
+
+    /**
+     * Is a square on the board?
+     *
+     * @param row the square's row
+     * @param col the square's column
+     * @return whether or not the row and column are in range
+     */
+    private static boolean onBoard(int row, int col) {
+        return row >= 0 && row < SoltrChessModel.ROWS && col >= 0 && col < SoltrChessModel.COLS;
+    }
+
+    /**
+     * Make the first move of a solution.
+     *
+     * @return an error, or null if the move was made
+     */
+    private String hint() {
+        String error = playable();
+        if (error != null) {
+            return error;
+        }
+        int[] solution = SoltrChessSolver.getDefault().solve(this.session.snapshot());
+        if (solution == null) {
+            return "no solution";
+        }
+        this.session.hint(solution[0]);
+        report(solution[0]);
+        return null;
+    }
+
+    /**
+     * Make every move of a solution.
+     *
+     * @return an error, or null if the moves were made
+     */
+    private String solve() {
+        String error = playable();
+        if (error != null) {
+            return error;
+        }
+        int[] solution = SoltrChessSolver.getDefault().solve(this.session.snapshot());
+        if (solution == null) {
+            return "no solution";
+        }
+        this.session.revealed(solution);
+        for (int move : solution) {
+            this.session.shown(move);
+            report(move);
+        }
+        return null;
+    }
+
+    /**
+     * Take back the last move.
+     *
+     * @return an error, or null if the move was taken back
+     */
+    private String undo() {
+        if (!this.session.canUndo()) {
+            return "nothing to undo";
+        }
+        report(this.session.undo());
+        return null;
+    }
+
+    /**
+     * Make the last move taken back again.
+     *
+     * @return an error, or null if the move was made
+     */
+    private String redo() {
+        if (!this.session.canRedo()) {
+            return "nothing to redo";
+        }
+        report(this.session.redo());
+        return null;
+    }
+
+    /**
+     * Run a script.
+     *
+     * @param args [0] the game file to start with, [1] optional command file;
+     *             commands are read from standard input if it is not given
+     * @throws IOException if the commands cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java SoltrChessScript game-file [command-file]");
+            System.exit(1);
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16), false);
+        SoltrChessScript script = new SoltrChessScript(args[0], out);
+        try (BufferedReader in = args.length == 2
+                ? Files.newBufferedReader(Path.of(args[1]))
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            long start = System.nanoTime();
+            long count = script.run(in);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d commands in %.3f s (%.0f per second)%n", count, seconds, count / seconds);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package soltrchess.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent request latencies for one endpoint so that
+ * percentiles can be reported without holding on to every sample.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class LatencyStats {
+    /** the number of samples kept */
+    private static final int WINDOW = 8192;
+
+    /** the most recent latencies in nanoseconds, used as a ring buffer */
+    private final long[] samples;
+    /** the total number of samples recorded */
+    private final AtomicLong count;
+
+    /**
+     * Constructor
+     */
+    public LatencyStats() {
+        this.samples = new long[WINDOW];
+        this.count = new AtomicLong();
+    }
+
+    /**
+     * Record a single request latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long index = this.count.getAndIncrement();
+        this.samples[(int) (index % WINDOW)] = nanos;
+    }
+
+    /**
+     * Get the total number of requests recorded.
+     *
+     * @return the request count
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Get the latency at the given percentile of the recent window.
+     *
+     * @param percentile a value between 0 and 100
+     * @return the latency in microseconds, or 0 if nothing has been recorded
+     */
+    public long percentile(double percentile) {
+        return percentile(snapshot(), percentile);
+    }
+
+    /**
+     * Get the latency at the given percentile of some sorted samples.
+     *
+     * @param sorted the sorted samples in nanoseconds
+     * @param percentile a value between 0 and 100
+     * @return the latency in microseconds, or 0 if there are no samples
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+
+    /**
+     * Copy and sort the samples currently in the window.
+     *
+     * @return the sorted samples
+     */
+    private long[] snapshot() {
+        int size = (int) Math.min(this.count.get(), WINDOW);
+        long[] copy = Arrays.copyOf(this.samples, size);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Returns the request count and latency percentiles in microseconds.
+     *
+     * @return the string representation
+     */
+    @Override
+    public String toString() {
+        long[] sorted = snapshot();
+        if (sorted.length == 0) {
+            return "count=0";
+        }
+        return "count=" + getCount()
+                + " p50=" + percentile(sorted, 50)
+                + " p90=" + percentile(sorted, 90)
+                + " p99=" + percentile(sorted, 99)
+                + " max=" + sorted[sorted.length - 1] / 1000;
+    }
+}
@@ -0,0 +1,138 @@
+package soltrchess.server;
+
+import soltrchess.model.BoardSnapshot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hands the work for each board to a pool of workers, doing it once for
+ * concurrent requests for the same board. A board that is already being
+ * worked on, or waiting for a worker, is not handed over a second time; the
+ * later request shares the result of the first one instead.
+ *
+ * Only so many boards can be in flight at once. A request for a new board
+ * beyond that fails at once instead of waiting, so a busy server pushes back
+ * on its clients rather than on the workers.
+ *
+ * @param <T> the type of result produced for a board
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class RequestDeduplicator<T> {
+    /** the work to do for each board */
+    private final Function<BoardSnapshot, T> job;
+    /** the pool that does the work */
+    private final ExecutorService workers;
+    /** a permit for each board that can be in flight at once */
+    private final Semaphore permits;
+    /**
+     * the results of every board that is waiting for or being worked on,
+     * keyed by the board's immutable snapshot
+     */
+    private final ConcurrentHashMap<BoardSnapshot, CompletableFuture<T>> inFlight;
+    /** the number of requests that shared an in-flight result */
+    private final AtomicLong deduplicated;
+    /** the number of requests turned away */
+    private final AtomicLong rejected;
+
+    /**
+     * Constructor
+     *
+     * @param job the work to do for each board
+     * @param workers the pool that does the work, which must be able to hold
+     *                maxInFlight tasks at once
+     * @param maxInFlight the most boards waiting for or being worked on at once
+     */
+    public RequestDeduplicator(Function<BoardSnapshot, T> job, ExecutorService workers, int maxInFlight) {
+        this.job = job;
+        this.workers = workers;
+        this.permits = new Semaphore(maxInFlight);
+        this.inFlight = new ConcurrentHashMap<>();
+        this.deduplicated = new AtomicLong();
+        this.rejected = new AtomicLong();
+    }
+
+    /**
+     * Request the work for a board. The result always completes: with
+     * RejectedExecutionException if too many boards are in flight or the
+     * workers have been shut down.
+     *
+     * @param board the board
+     * @return the eventual result
+     */
+    public CompletableFuture<T> submit(BoardSnapshot board) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> existing = this.inFlight.putIfAbsent(board, result);
+        if (existing != null) {
+            this.deduplicated.incrementAndGet();
+            return existing;
+        }
+        if (!this.permits.tryAcquire()) {
+            reject(board, result, new RejectedExecutionException("too many boards in flight"));
+            return result;
+        }
+        try {
+            this.workers.execute(() -> run(board, result));
+        } catch (RejectedExecutionException e) {
+            // the workers were shut down
+            this.permits.release();
+            reject(board, result, e);
+        }
+        return result;
+    }
+
+    /**
+     * Fail a request that was not handed to the workers.
+     *
+     * @param board the board
+     * @param result its result
+     * @param e why it failed
+     */
+    private void reject(BoardSnapshot board, CompletableFuture<T> result, RejectedExecutionException e) {
+        this.rejected.incrementAndGet();
+        this.inFlight.remove(board, result);
+        result.completeExceptionally(e);
+    }
+
+    /**
+     * Do the work for one board and publish the result.
+     *
+     * @param board the board
+     * @param result its result
+     */
+    private void run(BoardSnapshot board, CompletableFuture<T> result) {
+        try {
+            result.complete(this.job.apply(board));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            this.inFlight.remove(board, result);
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Get the number of requests that shared an in-flight result.
+     *
+     * @return the deduplicated request count
+     */
+    public long getDeduplicated() {
+        return this.deduplicated.get();
+    }
+
+    /**
+     * Get the number of requests turned away because too many boards were
+     * in flight or the workers had been shut down.
+     *
+     * @return the rejected request count
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+}
@@ -0,0 +1,106 @@
+package soltrchess.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a SoltrChessServer on the loopback address with concurrent
+ * clients. If no port is given, a server is started in this JVM first.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SoltrChessLoadTest {
+    /**
+     * Run the load test.
+     *
+     * @param args [0] endpoint, [1] number of clients, [2] requests per client,
+     *             [3...] game files to post; use "port=N" anywhere to target a
+     *             server that is already running
+     * @throws Exception if the test cannot run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: java SoltrChessLoadTest endpoint clients requests [port=N] game-file...");
+            System.exit(1);
+        }
+        String endpoint = args[0];
+        int clients = Integer.parseInt(args[1]);
+        int requests = Integer.parseInt(args[2]);
+        int port = -1;
+        List<String> boards = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("port=")) {
+                port = Integer.parseInt(args[i].substring("port=".length()));
+            } else {
+                boards.add(readBoard(Path.of(args[i])));
+            }
+        }
+
+        SoltrChessServer local = null;
+        if (port < 0) {
+            local = new SoltrChessServer(0, Runtime.getRuntime().availableProcessors());
+            local.start();
+            port = local.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI target = URI.create("http://127.0.0.1:" + port + "/" + endpoint);
+        AtomicLong failures = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int offset = c;
+            pool.execute(() -> {
+                for (int r = 0; r < requests; r++) {
+                    String board = boards.get((offset + r) % boards.size());
+                    HttpRequest request = HttpRequest.newBuilder(target)
+                            .POST(HttpRequest.BodyPublishers.ofString(board)).build();
+                    try {
+                        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long total = (long) clients * requests;
+        System.out.printf("%d requests in %.2fs (%.0f req/s), %d failed%n", total, seconds, total / seconds, failures.get());
+        HttpRequest statsRequest = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/stats")).build();
+        System.out.print(client.send(statsRequest, HttpResponse.BodyHandlers.ofString()).body());
+        if (local != null) {
+            local.stop();
+        }
+    }
+
+    /**
+     * Read the board from a game file, leaving out its trailer line.
+     *
+     * @param file the game file
+     * @return the board text
+     * @throws IOException if the file cannot be read
+     */
+    private static String readBoard(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        return String.join("\n", lines.subList(0, Math.min(lines.size(), 4))) + "\n";
+    }
+}
@@ -0,0 +1,361 @@
+package soltrchess.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import soltrchess.backtracking.Backtracker;
+import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Move;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A small HTTP service that answers questions about posted boards. Every
+ * request is a POST whose body holds a board in the same format as a game
+ * file. The service listens on the loopback address only.
+ *
+ * <ul>
+ *     <li>/solve - "SOLUTION n" followed by n moves, or "NO_SOLUTION"</li>
+ *     <li>/hint - "HINT" followed by the next move, "SOLVED" or "NO_SOLUTION"</li>
+ *     <li>/validate - the board is followed by "fromRow fromCol toRow toCol";
+ *     answers "VALID" or "INVALID"</li>
+ *     <li>/count - "COUNT n" where n is the number of solutions</li>
+ *     <li>/stats - request counts and latency percentiles (GET)</li>
+ * </ul>
+ *
+ * Moves are written as "fromRow fromCol toRow toCol". Concurrent requests
+ * for the same board share one solve (see RequestDeduplicator). When too
+ * many boards are in flight, or an answer takes longer than the
+ * soltrchess.server.timeout property's seconds (default 60), the service
+ * answers 503.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class SoltrChessServer {
+    /** the default port */
+    public static final int DEFAULT_PORT = 8080;
+    /** the number of tokens used by a board */
+    private static final int BOARD_TOKENS = SoltrChessModel.ROWS * SoltrChessModel.COLS;
+    /** the number of boards each kind of work can have in flight, per solver thread */
+    private static final int IN_FLIGHT_PER_THREAD = 128;
+    /** the default number of seconds to wait for an answer */
+    private static final int DEFAULT_TIMEOUT_SECONDS = 60;
+
+    /** the HTTP server */
+    private final HttpServer server;
+    /** the threads that handle HTTP exchanges */
+    private final ThreadPoolExecutor handlers;
+    /** the threads that run the solver */
+    private final ThreadPoolExecutor workers;
+    /** solves the boards of solve and hint requests */
+    private final RequestDeduplicator<int[]> solves;
+    /** counts the solutions of the boards of count requests */
+    private final RequestDeduplicator<Long> counts;
+    /** the number of seconds to wait for an answer */
+    private final int timeoutSeconds;
+    /** the latencies of each endpoint */
+    private final Map<String, LatencyStats> stats;
+
+    /**
+     * Create a server listening on the loopback address.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param threads the number of solver threads
+     * @throws IOException if the port cannot be bound
+     */
+    public SoltrChessServer(int port, int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // handlers mostly wait on the solver, so there are more of them; when
+        // they are all busy the accepting thread runs the exchange itself,
+        // which pushes back on clients instead of queueing without bound
+        this.handlers = new ThreadPoolExecutor(threads * 4, threads * 4, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 64), new ThreadPoolExecutor.CallerRunsPolicy());
+        // the queue holds everything both kinds of work can have in flight,
+        // so the workers only reject tasks once they have been shut down
+        int inFlight = threads * IN_FLIGHT_PER_THREAD;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * inFlight), new ThreadPoolExecutor.AbortPolicy());
+        this.solves = new RequestDeduplicator<>(SoltrChessSolver.getDefault()::solve, this.workers, inFlight);
+        this.counts = new RequestDeduplicator<>(SoltrChessServer::count, this.workers, inFlight);
+        this.timeoutSeconds = Integer.getInteger("soltrchess.server.timeout", DEFAULT_TIMEOUT_SECONDS);
+        this.stats = new LinkedHashMap<>();
+        for (String endpoint : Arrays.asList("solve", "hint", "validate", "count")) {
+            this.stats.put(endpoint, new LatencyStats());
+        }
+
+        this.server.createContext("/solve", timed("solve", this::handleSolve));
+        this.server.createContext("/hint", timed("hint", this::handleHint));
+        this.server.createContext("/validate", timed("validate", this::handleValidate));
+        this.server.createContext("/count", timed("count", this::handleCount));
+        this.server.createContext("/stats", this::handleStats);
+        this.server.setExecutor(this.handlers);
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stop accepting requests and shut down the thread pools. Boards already
+     * handed to the workers are still answered.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.handlers.shutdown();
+        this.workers.shutdown();
+    }
+
+    /**
+     * Get the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Count the solutions of a board.
+     *
+     * @param board the board
+     * @return the number of solutions
+     */
+    private static Long count(BoardSnapshot board) {
+        return new Backtracker().countSolutions(new SoltrChessConfig(board));
+    }
+
+    /**
+     * Wrap a handler so its latency is recorded.
+     *
+     * @param endpoint the name of the endpoint
+     * @param handler the handler
+     * @return the timed handler
+     */
+    private HttpHandler timed(String endpoint, HttpHandler handler) {
+        LatencyStats latency = this.stats.get(endpoint);
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    respond(exchange, 405, "POST only\n");
+                } else {
+                    handler.handle(exchange);
+                }
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage() + "\n");
+            } catch (RejectedExecutionException e) {
+                respond(exchange, 503, e.getMessage() + "\n");
+            } catch (RuntimeException e) {
+                respond(exchange, 500, e + "\n");
+            } finally {
+                latency.record(System.nanoTime() - start);
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * Read the whitespace separated tokens of a request body.
+     *
+     * @param exchange the HTTP exchange
+     * @return the tokens
+     * @throws IOException if the body cannot be read
+     */
+    private static String[] readTokens(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (body.isEmpty()) {
+            throw new IllegalArgumentException("missing board");
+        }
+        return body.split("\\s+");
+    }
+
+    /**
+     * Build a board from the first tokens of a request body.
+     *
+     * @param tokens the tokens of the request body
+     * @return the board
+     */
+    private static SoltrChessModel readBoard(String[] tokens) {
+        if (tokens.length < BOARD_TOKENS) {
+            throw new IllegalArgumentException("incomplete board");
+        }
+        SoltrChessModel board = new SoltrChessModel(new Scanner(String.join(" ", Arrays.copyOf(tokens, BOARD_TOKENS))));
+        if (board.getGameStatus() == SoltrChessModel.Status.INVALID_FILE) {
+            throw new IllegalArgumentException("invalid board");
+        }
+        return board;
+    }
+
+    /**
+     * Wait for the result of the work on a board.
+     *
+     * @param work the work
+     * @param board the board
+     * @param <T> the type of result
+     * @return the result
+     * @throws RejectedExecutionException if the server is too busy, shutting
+     *         down, or does not answer in time
+     */
+    private <T> T await(RequestDeduplicator<T> work, SoltrChessModel board) {
+        try {
+            return work.submit(BoardSnapshot.of(board)).get(this.timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted");
+        } catch (TimeoutException e) {
+            // the work goes on, and later requests for the board share it
+            throw new RejectedExecutionException("no answer in " + this.timeoutSeconds + " seconds");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Handle /solve.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        SoltrChessModel board = readBoard(readTokens(exchange));
+        int[] moves = await(this.solves, board);
+        if (moves == null) {
+            respond(exchange, 200, "NO_SOLUTION\n");
+            return;
+        }
+        StringBuilder response = new StringBuilder("SOLUTION ").append(moves.length).append("\n");
+        for (int move : moves) {
+            response.append(Move.toString(move)).append("\n");
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    /**
+     * Handle /hint.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleHint(HttpExchange exchange) throws IOException {
+        SoltrChessModel board = readBoard(readTokens(exchange));
+        int[] moves = await(this.solves, board);
+        if (moves == null) {
+            respond(exchange, 200, "NO_SOLUTION\n");
+        } else if (moves.length == 0) {
+            respond(exchange, 200, "SOLVED\n");
+        } else {
+            respond(exchange, 200, "HINT " + Move.toString(moves[0]) + "\n");
+        }
+    }
+
+    /**
+     * Handle /validate.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleValidate(HttpExchange exchange) throws IOException {
+        String[] tokens = readTokens(exchange);
+        SoltrChessModel board = readBoard(tokens);
+        if (tokens.length != BOARD_TOKENS + 4) {
+            throw new IllegalArgumentException("expected fromRow fromCol toRow toCol after the board");
+        }
+        int[] move = new int[4];
+        try {
+            for (int i = 0; i < move.length; i++) {
+                move[i] = Integer.parseInt(tokens[BOARD_TOKENS + i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid move");
+        }
+        boolean valid = board.isValidMove(move[1], move[0], move[3], move[2]);
+        respond(exchange, 200, valid ? "VALID\n" : "INVALID\n");
+    }
+
+    /**
+     * Handle /count.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleCount(HttpExchange exchange) throws IOException {
+        SoltrChessModel board = readBoard(readTokens(exchange));
+        respond(exchange, 200, "COUNT " + await(this.counts, board) + "\n");
+    }
+
+    /**
+     * Handle /stats.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        StringBuilder response = new StringBuilder();
+        for (Map.Entry<String, LatencyStats> entry : this.stats.entrySet()) {
+            response.append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+        response.append("rejected solve=").append(this.solves.getRejected())
+                .append(" count=").append(this.counts.getRejected()).append("\n");
+        response.append("deduplicated solve=").append(this.solves.getDeduplicated())
+                .append(" count=").append(this.counts.getDeduplicated()).append("\n");
+        try {
+            respond(exchange, 200, response.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send a plain text response.
+     *
+     * @param exchange the HTTP exchange
+     * @param code the status code
+     * @param text the response body
+     * @throws IOException if the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, int code, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param args optional [0] port and [1] number of solver threads
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SoltrChessServer server = new SoltrChessServer(port, threads);
+        server.start();
+        System.out.println("Solitaire Chess server listening on 127.0.0.1:" + server.getPort());
+    }
+}
@@ -0,0 +1,346 @@
+package soltrchess.shard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds every solvable board with a given number of pieces by splitting the
+ * boards into shards, one per multiset of pieces, and handing the shards to
+ * ShardWorker processes on this machine over their standard input and
+ * output. Each worker is its own JVM, so no single heap has to hold the
+ * whole enumeration.
+ *
+ * A worker that crashes or stops answering is restarted and the shard it
+ * was working on goes back on the queue. A worker has not answered if it
+ * has not finished its shard within the number of seconds given by the
+ * soltrchess.shard.timeout property, 600 by default. A shard's boards are
+ * only merged into the results once its worker reports it done, so a crash
+ * never leaves half a shard behind.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class ShardCoordinator {
+    /** the number of packed piece codes */
+    private static final int CODES = 6;
+    /** the number of times a shard is tried before it is given up on */
+    private static final int MAX_ATTEMPTS = 3;
+    /** the default number of seconds a worker is given to finish a shard */
+    private static final int DEFAULT_TIMEOUT_SECONDS = 600;
+
+    /** a multiset of pieces and every board that holds exactly them */
+    private static class Shard {
+        /** the shard's number */
+        private final int id;
+        /** the packed codes of the pieces, in ascending order */
+        private final String codes;
+        /** the number of times a worker has been given the shard */
+        private int attempts;
+
+        /**
+         * Constructor
+         *
+         * @param id the shard's number
+         * @param codes the packed codes of the pieces, in ascending order
+         */
+        private Shard(int id, String codes) {
+            this.id = id;
+            this.codes = codes;
+            this.attempts = 0;
+        }
+    }
+
+    /** the number of worker processes */
+    private final int workers;
+    /** where to write the solvable boards, or null to only count them */
+    private final Writer out;
+    /** the number of shards the boards were split into */
+    private final int shards;
+    /** the shards that have not been handed out */
+    private final BlockingQueue<Shard> pending;
+    /** the number of shards that are not finished */
+    private final AtomicInteger remaining;
+    /** the number of boards looked at */
+    private final AtomicLong boards;
+    /** the number of solvable boards found */
+    private final AtomicLong solvable;
+    /** the number of times a worker had to be restarted */
+    private final AtomicInteger restarts;
+    /** the shards that were given up on */
+    private final List<String> failed;
+    /** the number of seconds a worker is given to finish a shard */
+    private final long timeoutSeconds;
+    /** stops the workers that take too long over a shard */
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * Create a coordinator for every board with a number of pieces.
+     *
+     * @param pieces the number of pieces on each board
+     * @param workers the number of worker processes
+     * @param out where to write the solvable boards, or null to only count them
+     */
+    public ShardCoordinator(int pieces, int workers, Writer out) {
+        this.workers = workers;
+        this.out = out;
+        this.pending = new LinkedBlockingQueue<>();
+        List<String> multisets = new ArrayList<>();
+        multisets(pieces, 1, "", multisets);
+        for (String codes : multisets) {
+            this.pending.add(new Shard(this.pending.size(), codes));
+        }
+        this.shards = this.pending.size();
+        this.remaining = new AtomicInteger(this.shards);
+        this.boards = new AtomicLong();
+        this.solvable = new AtomicLong();
+        this.restarts = new AtomicInteger();
+        this.failed = new ArrayList<>();
+        this.timeoutSeconds = Integer.getInteger("soltrchess.shard.timeout", DEFAULT_TIMEOUT_SECONDS);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * List every multiset of piece codes of a size.
+     *
+     * @param size the number of codes still to add
+     * @param lowest the lowest code that may be added
+     * @param prefix the codes added so far
+     * @param into where to add the multisets
+     */
+    private static void multisets(int size, int lowest, String prefix, List<String> into) {
+        if (size == 0) {
+            into.add(prefix);
+            return;
+        }
+        for (int code = lowest; code <= CODES; code++) {
+            multisets(size - 1, code, prefix + code, into);
+        }
+    }
+
+    /**
+     * Get the number of shards the boards were split into.
+     *
+     * @return the number of shards
+     */
+    public int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * Start a worker process running the same Java, from the same module or
+     * class path, as this one.
+     *
+     * @return the worker process
+     * @throws IOException if the process cannot be started
+     */
+    private static Process startWorker() throws IOException {
+        String java = ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("-p");
+            command.add(modulePath);
+            command.add("-m");
+            command.add("SolitaireChess/" + ShardWorker.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ShardWorker.class.getName());
+        }
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    /**
+     * Keep one worker process busy until every shard is finished, restarting
+     * it whenever it dies.
+     */
+    private void manage() {
+        while (this.remaining.get() > 0) {
+            Process process;
+            try {
+                process = startWorker();
+            } catch (IOException e) {
+                System.err.println("Cannot start worker: " + e.getMessage());
+                return;
+            }
+            Shard shard = null;
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                 BufferedWriter commands = new BufferedWriter(
+                         new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+                while (this.remaining.get() > 0) {
+                    shard = this.pending.poll(100, TimeUnit.MILLISECONDS);
+                    if (shard == null) {
+                        continue;
+                    }
+                    shard.attempts++;
+                    commands.write("SHARD " + shard.id + " " + shard.codes + " " + (this.out != null ? 1 : 0) + "\n");
+                    commands.flush();
+                    // a hung worker is killed, which ends its output and so the wait for it
+                    Shard timed = shard;
+                    ScheduledFuture<?> deadline = this.watchdog.schedule(() -> {
+                        System.err.println("Worker took over " + this.timeoutSeconds + " s on shard " + timed.codes
+                                + ", stopping it");
+                        process.destroyForcibly();
+                    }, this.timeoutSeconds, TimeUnit.SECONDS);
+                    try {
+                        finish(shard, in);
+                    } finally {
+                        deadline.cancel(false);
+                    }
+                    shard = null;
+                }
+                commands.write("QUIT\n");
+                commands.flush();
+                process.waitFor(5, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                if (shard != null) {
+                    retry(shard);
+                }
+                this.restarts.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Read a worker's answer to a shard and merge it into the results.
+     *
+     * @param shard the shard the worker was given
+     * @param in the worker's output
+     * @throws IOException if the worker dies or answers something unexpected
+     */
+    private void finish(Shard shard, BufferedReader in) throws IOException {
+        StringBuilder found = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("BOARD ")) {
+                found.append(line, "BOARD ".length(), line.length()).append('\n');
+            } else if (line.startsWith("DONE " + shard.id + " ")) {
+                String[] parts = line.split(" ");
+                if (this.out != null) {
+                    synchronized (this.out) {
+                        this.out.write(found.toString());
+                    }
+                }
+                this.boards.addAndGet(Long.parseLong(parts[2]));
+                this.solvable.addAndGet(Long.parseLong(parts[3]));
+                this.remaining.decrementAndGet();
+                return;
+            } else {
+                throw new IOException("Unexpected answer: " + line);
+            }
+        }
+        throw new IOException("Worker exited during shard " + shard.id);
+    }
+
+    /**
+     * Put a shard back on the queue, or give up on it if it has been tried
+     * too many times.
+     *
+     * @param shard the shard whose worker died
+     */
+    private void retry(Shard shard) {
+        if (shard.attempts < MAX_ATTEMPTS) {
+            System.err.println("Worker died during shard " + shard.codes + ", reassigning it");
+            this.pending.add(shard);
+        } else {
+            System.err.println("Giving up on shard " + shard.codes);
+            synchronized (this.failed) {
+                this.failed.add(shard.codes);
+            }
+            this.remaining.decrementAndGet();
+        }
+    }
+
+    /**
+     * Run every shard to completion, unless every worker stops for good,
+     * such as when no worker process can be started.
+     *
+     * @return the number of shards that were never finished or given up on
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public int run() throws InterruptedException {
+        List<Thread> managers = new ArrayList<>();
+        for (int i = 0; i < this.workers; i++) {
+            Thread manager = new Thread(this::manage, "shard-worker-" + i);
+            manager.start();
+            managers.add(manager);
+        }
+        try {
+            for (Thread manager : managers) {
+                manager.join();
+            }
+        } finally {
+            this.watchdog.shutdownNow();
+        }
+        return this.remaining.get();
+    }
+
+    /**
+     * Run an enumeration and print its totals.
+     *
+     * @param args [0] number of pieces, [1] number of workers,
+     *             [2] optional file to write the solvable boards to, in hex
+     * @throws Exception if the enumeration cannot run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java ShardCoordinator pieces workers [output-file]");
+            System.exit(1);
+        }
+        int pieces = Integer.parseInt(args[0]);
+        int workers = Integer.parseInt(args[1]);
+        Writer out = args.length == 3 ? Files.newBufferedWriter(Path.of(args[2])) : null;
+        ShardCoordinator coordinator = new ShardCoordinator(pieces, workers, out);
+        int shards = coordinator.getShards();
+        long start = System.nanoTime();
+        int unfinished;
+        try {
+            unfinished = coordinator.run();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("shards: " + shards + "  workers: " + workers + "  restarts: " + coordinator.restarts.get());
+        System.out.println("boards: " + coordinator.boards.get() + "  solvable: " + coordinator.solvable.get()
+                + "  time: " + millis + " ms");
+        if (unfinished > 0) {
+            System.out.println("unfinished shards: " + unfinished);
+        }
+        if (!coordinator.failed.isEmpty()) {
+            System.out.println("failed shards: " + coordinator.failed);
+        }
+        if (unfinished > 0 || !coordinator.failed.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package soltrchess.shard;
+
+import soltrchess.engine.PackedSearch;
+import soltrchess.model.PackedBoard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A worker process for ShardCoordinator. It reads shards from standard
+ * input, one per line, and answers each on standard output.
+ *
+ * <pre>
+ * in:  SHARD id codes emit     e.g. "SHARD 7 1136 1"
+ * out: BOARD hex               one per solvable board, only if emit is 1
+ * out: DONE id boards solvable
+ * in:  QUIT
+ * </pre>
+ *
+ * A shard is every board holding exactly the pieces whose packed codes
+ * (see PackedBoard) are listed, in any arrangement.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class ShardWorker {
+    /**
+     * Solve every board of a shard.
+     *
+     * @param codes the packed codes of the pieces, in ascending order
+     * @param out where to write solvable boards, or null to only count them
+     * @return the number of boards and the number that are solvable
+     * @throws IOException if a board cannot be written
+     */
+    static long[] run(int[] codes, Writer out) throws IOException {
+        long boards = 0;
+        long solvable = 0;
+        int[] arrangement = new int[codes.length];
+        for (int squares = 0; squares < 1 << PackedBoard.SQUARES; squares++) {
+            if (Integer.bitCount(squares) != codes.length) {
+                continue;
+            }
+            System.arraycopy(codes, 0, arrangement, 0, codes.length);
+            do {
+                long packed = 0;
+                int remaining = squares;
+                for (int code : arrangement) {
+                    int square = Integer.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    packed |= (long) code << (PackedBoard.BITS * square);
+                }
+                boards++;
+                if (PackedSearch.solvable(packed, codes.length)) {
+                    solvable++;
+                    if (out != null) {
+                        out.write("BOARD " + Long.toHexString(packed) + "\n");
+                    }
+                }
+            } while (nextArrangement(arrangement));
+        }
+        return new long[] { boards, solvable };
+    }
+
+    /**
+     * Step to the next distinct arrangement of the codes, in lexicographic
+     * order.
+     *
+     * @param codes the current arrangement, changed in place
+     * @return false if this was the last arrangement
+     */
+    private static boolean nextArrangement(int[] codes) {
+        int i = codes.length - 2;
+        while (i >= 0 && codes[i] >= codes[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = codes.length - 1;
+        while (codes[j] <= codes[i]) {
+            j--;
+        }
+        int swap = codes[i];
+        codes[i] = codes[j];
+        codes[j] = swap;
+        for (int lo = i + 1, hi = codes.length - 1; lo < hi; lo++, hi--) {
+            swap = codes[lo];
+            codes[lo] = codes[hi];
+            codes[hi] = swap;
+        }
+        return true;
+    }
+
+    /**
+     * Serve shards until told to quit or standard input closes.
+     *
+     * @param args unused
+     * @throws IOException if the coordinator cannot be talked to
+     */
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("QUIT")) {
+            String[] parts = line.split(" ");
+            if (parts.length != 4 || !parts[0].equals("SHARD")) {
+                System.err.println("Bad command: " + line);
+                continue;
+            }
+            int[] codes = new int[parts[2].length()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = parts[2].charAt(i) - '0';
+            }
+            long[] counts = run(codes, parts[3].equals("1") ? out : null);
+            out.write("DONE " + parts[1] + " " + counts[0] + " " + counts[1] + "\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package soltrchess.tools;
+
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds puzzles that are repeated across a corpus, whether under another
+ * name or as a mirror image of another puzzle, and optionally removes the
+ * copies. The corpus is read one file at a time and every puzzle is looked
+ * up in a CorpusIndex, so a corpus of any size is checked in one pass with
+ * the same memory. The index is kept between runs, so a new pack is also
+ * checked against every puzzle indexed before it.
+ *
+ * A file may hold one puzzle, like the game files in data/, or a pack of
+ * them one after another. A puzzle is four rows of four squares, followed
+ * by any lines that are not rows, such as its trailer line. The first
+ * puzzle seen with a board is the original and any later one is a copy;
+ * directories are walked in name order, so the same corpus always gives
+ * the same originals. With -prune copies are removed: a file that only
+ * held copies is deleted, and a pack is rewritten without them.
+ *
+ * The index can be out of date, since files may be edited, renumbered by
+ * pruning or deleted between runs. So before a puzzle is called a copy its
+ * original is read back. If it has moved within its file the index is
+ * told its new name, and if it is gone from the file the puzzle being
+ * checked takes its place in the index and is kept.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class CorpusDedup {
+    /** a row of a board: four squares, each one letter or - */
+    private static final Pattern ROW = Pattern.compile("\\s*\\S(\\s+\\S){" + (SoltrChessModel.COLS - 1) + "}\\s*");
+    /** the packed board of a puzzle that is not a valid board */
+    private static final long INVALID = -1;
+
+    /** the index the puzzles are looked up in */
+    private final CorpusIndex index;
+    /** whether or not to remove copies */
+    private final boolean prune;
+    /** the directory of the index, which is not part of the corpus */
+    private final Path indexDir;
+    /** the number of files holding puzzles */
+    private long files;
+    /** the number of puzzles */
+    private long puzzles;
+    /** the number of copies */
+    private long copies;
+    /** the number of copies that are mirror images of their original */
+    private long mirrored;
+    /** the number of puzzles that are not valid boards */
+    private long invalid;
+    /** the number of files deleted */
+    private long deleted;
+    /** the number of packs rewritten */
+    private long rewritten;
+    /** the file whose puzzles were read back last, or null */
+    private String readFile;
+    /** the packed boards of the puzzles in readFile, or null if it could not be read */
+    private long[] readBoards;
+
+    /**
+     * Create a deduplicator.
+     *
+     * @param index the index the puzzles are looked up in
+     * @param indexDir the directory of the index
+     * @param prune whether or not to remove copies
+     */
+    private CorpusDedup(CorpusIndex index, Path indexDir, boolean prune) {
+        this.index = index;
+        this.indexDir = indexDir.toAbsolutePath().normalize();
+        this.prune = prune;
+    }
+
+    /**
+     * Check a file, or every file under a directory in name order.
+     *
+     * @param path the file or directory
+     * @throws IOException if the index cannot be written or a file pruned
+     */
+    private void visit(Path path) throws IOException {
+        if (path.toAbsolutePath().normalize().startsWith(this.indexDir)) {
+            return;
+        }
+        if (Files.isDirectory(path)) {
+            List<Path> entries;
+            try (Stream<Path> list = Files.list(path)) {
+                entries = list.sorted().collect(Collectors.toList());
+            }
+            for (Path entry : entries) {
+                visit(entry);
+            }
+        } else if (Files.isRegularFile(path)) {
+            check(path);
+        }
+    }
+
+    /**
+     * Check the puzzles in one file.
+     *
+     * @param file the file
+     * @throws IOException if the index cannot be written or the file pruned
+     */
+    private void check(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file);
+        } catch (MalformedInputException e) {
+            // not a text file, so it holds no puzzles
+            return;
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println(file + ": cannot be read");
+            return;
+        }
+        // where each puzzle starts, and then where the lines after it end
+        List<Integer> starts = starts(lines);
+        if (starts.isEmpty()) {
+            return;
+        }
+        this.files++;
+        starts.add(lines.size());
+
+        String path = file.toAbsolutePath().normalize().toString();
+        boolean[] copy = new boolean[starts.size() - 1];
+        int kept = copy.length;
+        // the first puzzle in this file with each canonical board
+        Map<Long, Integer> here = new HashMap<>();
+        long[] boards = new long[copy.length];
+        for (int i = 0; i < copy.length; i++) {
+            this.puzzles++;
+            String name = copy.length == 1 ? path : path + "#" + (i + 1);
+            long packed = pack(lines, starts.get(i));
+            if (packed == INVALID) {
+                System.out.println(name + ": invalid board");
+                this.invalid++;
+                continue;
+            }
+            boards[i] = packed;
+            Integer earlier = here.putIfAbsent(CorpusIndex.canonical(packed), i);
+            String originalName = null;
+            long originalBoard = 0;
+            if (earlier != null) {
+                originalName = path + "#" + (earlier + 1);
+                originalBoard = boards[earlier];
+            } else {
+                CorpusIndex.Original original = this.index.add(packed, name);
+                if (original != null && inFile(original.name, path)) {
+                    // this puzzle, indexed by an earlier run and perhaps
+                    // renumbered by pruning since
+                    if (!original.name.equals(name)) {
+                        this.index.rename(packed, name);
+                    }
+                } else if (original != null) {
+                    String originalFile = inFile(original.name);
+                    long[] there = boards(originalFile);
+                    int at = find(there, original);
+                    if (at < 0) {
+                        // the original is gone, so this puzzle is kept in its place
+                        this.index.rename(packed, name);
+                    } else {
+                        originalName = there.length == 1 ? originalFile : originalFile + "#" + (at + 1);
+                        originalBoard = there[at];
+                        if (!originalName.equals(original.name)) {
+                            this.index.rename(originalBoard, originalName);
+                        }
+                    }
+                }
+            }
+            if (originalName != null) {
+                boolean mirror = originalBoard != packed;
+                System.out.println(name + ": copy of " + originalName + (mirror ? " (mirrored)" : ""));
+                this.copies++;
+                this.mirrored += mirror ? 1 : 0;
+                copy[i] = true;
+                kept--;
+            }
+        }
+
+        if (this.prune && kept < copy.length && path.equals(this.readFile)) {
+            this.readFile = null;
+            this.readBoards = null;
+        }
+        if (this.prune && kept == 0) {
+            Files.delete(file);
+            this.deleted++;
+        } else if (this.prune && kept < copy.length) {
+            List<String> rest = new ArrayList<>(lines.subList(0, starts.get(0)));
+            for (int i = 0; i < copy.length; i++) {
+                if (!copy[i]) {
+                    rest.addAll(lines.subList(starts.get(i), starts.get(i + 1)));
+                }
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, rest);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.rewritten++;
+        }
+    }
+
+    /**
+     * Find where the puzzles in a file start: four rows of four squares.
+     *
+     * @param lines the lines of the file
+     * @return the line each puzzle starts on
+     */
+    private static List<Integer> starts(List<String> lines) {
+        List<Integer> starts = new ArrayList<>();
+        for (int line = 0; line + SoltrChessModel.ROWS <= lines.size(); line++) {
+            boolean board = true;
+            for (int row = 0; row < SoltrChessModel.ROWS && board; row++) {
+                board = ROW.matcher(lines.get(line + row)).matches();
+            }
+            if (board) {
+                starts.add(line);
+                line += SoltrChessModel.ROWS - 1;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Read the board of a puzzle.
+     *
+     * @param lines the lines of the file
+     * @param start the line the puzzle starts on
+     * @return the packed board, or INVALID if it is not a valid board
+     */
+    private static long pack(List<String> lines, int start) {
+        SoltrChessModel board = new SoltrChessModel(
+                new Scanner(String.join("\n", lines.subList(start, start + SoltrChessModel.ROWS))));
+        if (board.getGameStatus() == SoltrChessModel.Status.INVALID_FILE) {
+            return INVALID;
+        }
+        return PackedBoard.pack(board);
+    }
+
+    /**
+     * Read back the boards of the puzzles in a file. The last file read is
+     * remembered, since the copies of a pack's puzzles tend to come together.
+     *
+     * @param file the file
+     * @return the packed boards, INVALID for those that are not valid, or
+     *         null if the file cannot be read
+     */
+    private long[] boards(String file) {
+        if (!file.equals(this.readFile)) {
+            this.readFile = file;
+            this.readBoards = null;
+            try {
+                List<String> lines = Files.readAllLines(Path.of(file));
+                List<Integer> starts = starts(lines);
+                long[] boards = new long[starts.size()];
+                for (int i = 0; i < boards.length; i++) {
+                    boards[i] = pack(lines, starts.get(i));
+                }
+                this.readBoards = boards;
+            } catch (IOException | UncheckedIOException e) {
+                // gone, or no longer a text file
+            }
+        }
+        return this.readBoards;
+    }
+
+    /**
+     * Find an indexed puzzle in the boards read back from its file: where
+     * its name says it is if it is still there, or else the first puzzle
+     * with the same canonical board.
+     *
+     * @param boards the boards in the puzzle's file, or null
+     * @param original the puzzle
+     * @return the puzzle's place in the file, from 0, or -1 if it is gone
+     */
+    private static int find(long[] boards, CorpusIndex.Original original) {
+        if (boards == null) {
+            return -1;
+        }
+        long key = CorpusIndex.canonical(original.board);
+        int hash = original.name.lastIndexOf('#');
+        int at = inFile(original.name).equals(original.name) ? 0
+                : Integer.parseInt(original.name.substring(hash + 1)) - 1;
+        if (at < boards.length && boards[at] != INVALID && CorpusIndex.canonical(boards[at]) == key) {
+            return at;
+        }
+        for (int i = 0; i < boards.length; i++) {
+            if (boards[i] != INVALID && CorpusIndex.canonical(boards[i]) == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the file a puzzle is in.
+     *
+     * @param name the puzzle's name: its file, then #n if the file is a pack
+     * @return the file
+     */
+    private static String inFile(String name) {
+        int hash = name.lastIndexOf('#');
+        return hash >= 0 && name.substring(hash + 1).matches("\\d+") ? name.substring(0, hash) : name;
+    }
+
+    /**
+     * Is a puzzle in a file?
+     *
+     * @param name the puzzle's name
+     * @param file the file
+     * @return whether or not the puzzle is in the file
+     */
+    private static boolean inFile(String name, String file) {
+        return inFile(name).equals(file);
+    }
+
+    /**
+     * Find the copies in a corpus.
+     *
+     * @param args [-i index-directory] [-prune], then the files and
+     *             directories of the corpus; the index is kept in
+     *             ~/.soltrchess/corpus if no directory is given
+     * @throws IOException if the index cannot be used or a file pruned
+     */
+    public static void main(String[] args) throws IOException {
+        Path indexDir = Path.of(System.getProperty("user.home"), ".soltrchess", "corpus");
+        boolean prune = false;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-")) {
+            if (args[first].equals("-prune")) {
+                prune = true;
+                first++;
+            } else if (args[first].equals("-i") && first + 1 < args.length) {
+                indexDir = Path.of(args[first + 1]);
+                first += 2;
+            } else {
+                break;
+            }
+        }
+        if (first == args.length || args[first].startsWith("-")) {
+            System.err.println("Usage: java CorpusDedup [-i index-directory] [-prune] file-or-directory...");
+            System.exit(1);
+        }
+        long begin = System.nanoTime();
+        try (CorpusIndex index = new CorpusIndex(indexDir)) {
+            CorpusDedup dedup = new CorpusDedup(index, indexDir, prune);
+            for (int i = first; i < args.length; i++) {
+                dedup.visit(Path.of(args[i]));
+            }
+            System.out.printf("%d puzzles in %d files: %d copies (%d mirrored), %d invalid; %d boards indexed, %.1f s%n",
+                    dedup.puzzles, dedup.files, dedup.copies, dedup.mirrored, dedup.invalid, index.size(),
+                    (System.nanoTime() - begin) / 1e9);
+            if (prune) {
+                System.out.println(dedup.deleted + " files deleted, " + dedup.rewritten + " packs rewritten");
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package soltrchess.tools;
+
+import soltrchess.model.PackedBoard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An on-disk index of every puzzle in a corpus, keyed by its canonical
+ * board: the smaller of its packed board and the packed board of its
+ * mirror image, so a puzzle and its mirror image (see PackedBoard.mirror())
+ * share a key. It remembers where each board was first seen, so a puzzle
+ * can be recognized as a copy of one indexed in an earlier run.
+ *
+ * The index is a directory of two files. index.bin is an open-addressing
+ * hash table mapped into memory, which is doubled in size whenever it is
+ * half full:
+ *
+ * <pre>
+ * 0 int  MAGIC
+ * 4 int  unused
+ * 8 long the number of boards indexed
+ * 16     the slots, SLOT_BYTES each:
+ *        0 long the key with USED set, and MIRRORED if the first puzzle was its mirror image
+ *        8 long where the first puzzle's name starts in names.txt
+ * </pre>
+ *
+ * names.txt holds the names of the puzzles, one to a line, in the order
+ * they were indexed. Only the table is ever read as a whole, and it is paged
+ * in by the operating system, so indexing takes the same memory however
+ * big the corpus is.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class CorpusIndex implements AutoCloseable {
+    /** the first int of the table file */
+    private static final int MAGIC = 0x53434458;
+    /** the size of the table file's header */
+    private static final int HEADER_BYTES = 16;
+    /** the size of a slot */
+    private static final int SLOT_BYTES = 16;
+    /** the number of slots in a new table */
+    private static final int MIN_SLOTS = 1 << 12;
+    /** the most slots a table can have, which keeps it under the 2 GB a mapping can hold */
+    private static final int MAX_SLOTS = 1 << 26;
+    /** set in the key of every used slot, since the empty board packs to 0 */
+    private static final long USED = 1L << 62;
+    /** set in the key of a slot if the first puzzle seen was the mirror image of the key */
+    private static final long MIRRORED = 1L << 63;
+
+    /** a puzzle already in the index */
+    public static class Original {
+        /** the name it was indexed under */
+        public final String name;
+        /** its packed board */
+        public final long board;
+
+        /**
+         * Constructor
+         *
+         * @param name the name it was indexed under
+         * @param board its packed board
+         */
+        private Original(String name, long board) {
+            this.name = name;
+            this.board = board;
+        }
+    }
+
+    /** the table file */
+    private final Path file;
+    /** the names of the puzzles */
+    private final RandomAccessFile names;
+    /** the length of names.txt */
+    private long namesLength;
+    /** the mapped table */
+    private MappedByteBuffer table;
+    /** the number of slots, a power of 2 */
+    private int slots;
+    /** the number of boards indexed */
+    private long count;
+
+    /**
+     * Open an index, creating it if the directory does not hold one.
+     *
+     * @param dir the directory, created if it does not exist
+     * @throws IOException if the index cannot be opened or is not an index
+     */
+    public CorpusIndex(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.file = dir.resolve("index.bin");
+        this.names = new RandomAccessFile(dir.resolve("names.txt").toFile(), "rw");
+        if (!Files.exists(this.file)) {
+            create(this.file, MIN_SLOTS);
+        }
+        map();
+        if (this.table.getInt(0) != MAGIC) {
+            this.names.close();
+            throw new IOException(this.file + " is not a corpus index");
+        }
+        this.count = this.table.getLong(8);
+        this.namesLength = this.names.length();
+    }
+
+    /**
+     * Get the canonical form of a board, which it shares with its mirror image.
+     *
+     * @param packed the packed board
+     * @return the smaller of the board and its mirror image
+     */
+    public static long canonical(long packed) {
+        return Math.min(packed, PackedBoard.mirror(packed));
+    }
+
+    /**
+     * Get the number of boards indexed.
+     *
+     * @return the number of boards
+     */
+    public long size() {
+        return this.count;
+    }
+
+    /**
+     * Index a puzzle, unless it or its mirror image already is.
+     *
+     * @param packed the puzzle's packed board
+     * @param name the puzzle's name, such as its file
+     * @return the puzzle indexed first with the same canonical board, or
+     *         null if there was none and this one has been indexed
+     * @throws IOException if the index cannot be written
+     */
+    public Original add(long packed, String name) throws IOException {
+        long key = canonical(packed);
+        int slot = find(key);
+        long stored = this.table.getLong(offset(slot));
+        if (stored != 0) {
+            long board = (stored & MIRRORED) != 0 ? PackedBoard.mirror(key) : key;
+            return new Original(readName(this.table.getLong(offset(slot) + 8)), board);
+        }
+        if (this.count + 1 > this.slots / 2) {
+            grow();
+            slot = find(key);
+        }
+        this.table.putLong(offset(slot), key | USED | (packed != key ? MIRRORED : 0));
+        this.table.putLong(offset(slot) + 8, writeName(name));
+        this.table.putLong(8, ++this.count);
+        return null;
+    }
+
+    /**
+     * Change where the puzzle indexed with a board's canonical board is
+     * said to be, such as when the one first indexed is no longer there.
+     *
+     * @rit.pre a puzzle with the same canonical board is in the index
+     * @param packed the packed board of the puzzle now named
+     * @param name the puzzle's name
+     * @throws IOException if the index cannot be written
+     */
+    public void rename(long packed, String name) throws IOException {
+        long key = canonical(packed);
+        int slot = find(key);
+        this.table.putLong(offset(slot), key | USED | (packed != key ? MIRRORED : 0));
+        this.table.putLong(offset(slot) + 8, writeName(name));
+    }
+
+    /**
+     * Find the slot holding a key, or the empty slot it would go in.
+     *
+     * @param key the canonical board
+     * @return the slot
+     */
+    private int find(long key) {
+        int mask = this.slots - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(this.slots)));
+        while (true) {
+            long stored = this.table.getLong(offset(slot));
+            if (stored == 0 || (stored & ~(USED | MIRRORED)) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Get where a slot starts in the table file.
+     *
+     * @param slot the slot
+     * @return the offset of the slot
+     */
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Add a name to the end of names.txt.
+     *
+     * @param name the name
+     * @return where the name starts
+     * @throws IOException if the name cannot be written
+     */
+    private long writeName(String name) throws IOException {
+        long at = this.namesLength;
+        byte[] line = (name + "\n").getBytes(StandardCharsets.UTF_8);
+        this.names.seek(at);
+        this.names.write(line);
+        this.namesLength += line.length;
+        return at;
+    }
+
+    /**
+     * Read a name from names.txt.
+     *
+     * @param at where the name starts
+     * @return the name
+     * @throws IOException if the name cannot be read
+     */
+    private String readName(long at) throws IOException {
+        this.names.seek(at);
+        ByteArrayOutputStream name = new ByteArrayOutputStream();
+        byte[] chunk = new byte[256];
+        int read;
+        while ((read = this.names.read(chunk)) > 0) {
+            int end = 0;
+            while (end < read && chunk[end] != '\n') {
+                end++;
+            }
+            name.write(chunk, 0, end);
+            if (end < read) {
+                break;
+            }
+        }
+        return name.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create an empty table file.
+     *
+     * @param file the file
+     * @param slots the number of slots
+     * @throws IOException if the file cannot be written
+     */
+    private static void create(Path file, int slots) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset(slots));
+            table.putInt(0, MAGIC);
+            table.force();
+        }
+    }
+
+    /**
+     * Map the table file.
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid once the channel is closed
+            this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            this.slots = (int) ((channel.size() - HEADER_BYTES) / SLOT_BYTES);
+        }
+    }
+
+    /**
+     * Double the number of slots, moving every key into a new table that
+     * then replaces the old one.
+     *
+     * @throws IOException if the new table cannot be written
+     */
+    private void grow() throws IOException {
+        if (this.slots >= MAX_SLOTS) {
+            throw new IOException(this.file + " is full");
+        }
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        create(temp, this.slots * 2);
+        MappedByteBuffer old = this.table;
+        int oldSlots = this.slots;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            this.slots = oldSlots * 2;
+        }
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long stored = old.getLong(offset(slot));
+            if (stored != 0) {
+                int to = find(stored & ~(USED | MIRRORED));
+                this.table.putLong(offset(to), stored);
+                this.table.putLong(offset(to) + 8, old.getLong(offset(slot) + 8));
+            }
+        }
+        this.table.putLong(8, this.count);
+        this.table.force();
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.table.force();
+        this.names.close();
+    }
+}
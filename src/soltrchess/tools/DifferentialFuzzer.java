@@ -0,0 +1,548 @@
+package soltrchess.tools;
+
+import soltrchess.backtracking.Backtracker;
+import soltrchess.backtracking.Configuration;
+import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.SoltrChessSolver;
+import soltrchess.engine.BatchMoveValidator;
+import soltrchess.engine.FrontierSearch;
+import soltrchess.engine.LayeredSearch;
+import soltrchess.engine.MoveTables;
+import soltrchess.engine.PackedSearch;
+import soltrchess.engine.TranspositionTable;
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks every optimized engine against the reference rules on random
+ * boards. The reference is ReferenceRules, the rules as they were written
+ * before piece movement moved into pieces.spec, kept frozen; whatever the
+ * reference does, quirks included, is what the engines must do too.
+ * SoltrChessModel.isValidMove(), which follows the spec square by square,
+ * is checked against it, and the successors SoltrChessConfig generates
+ * from the model and the Backtracker's answer to whether a board can be
+ * solved are then the reference for the search engines. MoveTables
+ * compiles the same spec into tables, so a mistake in the spec, in reading
+ * it or in compiling it shows up as a difference.
+ *
+ * For every board the fuzzer compares:
+ *
+ * <pre>
+ * rules       ReferenceRules and SoltrChessModel.isValidMove() for all 256
+ *             pairs of squares
+ * legal       ReferenceRules and MoveTables for all 256 pairs of squares
+ * batch       BatchMoveValidator, a batch of boards at a time
+ * successors  SoltrChessConfig.getSuccessors() and the MoveTables captures
+ * solvable    Backtracker, PackedSearch with and without a table, and the
+ *             SoltrChessSolver, whose solution is replayed by the reference
+ * disk        LayeredSearch and FrontierSearch on every DISK_EVERY-th board
+ * </pre>
+ *
+ * Boards are drawn from a SplittableRandom, so a seed always gives the same
+ * boards and any failure can be run again. A failing board is shrunk by
+ * taking pieces off for as long as the same check still fails, and both the
+ * board and its shrunk form are printed. The exit status is 1 if anything
+ * failed, so a run can gate a build; the default number of boards takes a
+ * few seconds.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class DifferentialFuzzer {
+    /** the letter for each piece, indexed by packed code */
+    private static final char[] LETTERS = { '-', 'B', 'K', 'N', 'P', 'Q', 'R' };
+    /** the number of boards checked by the batch kernels at once */
+    private static final int BATCH = 256;
+    /** how often the disk and parallel searches are checked, in boards */
+    private static final int DISK_EVERY = 2048;
+    /** the most failures printed in full */
+    private static final int MAX_REPORTS = 20;
+
+    /** a comparison of the reference and an engine on one board */
+    private interface Check {
+        /**
+         * Compare on a board.
+         *
+         * @param board the packed board
+         * @return a description of the difference, or null if they agree
+         * @throws Exception if an engine cannot run
+         */
+        String mismatch(long board) throws Exception;
+    }
+
+    /** the most pieces on a board whose solvability is checked */
+    private final int solvePieces;
+    /** the table PackedSearch searches with */
+    private final TranspositionTable table;
+    /** the solver checked, with its own table and no cache */
+    private final SoltrChessSolver solver;
+    /** the parallel search checked */
+    private final FrontierSearch frontier;
+    /** the directory LayeredSearch writes to */
+    private final Path dir;
+    /** the number of boards each check has been run on, by name */
+    private final Map<String, Long> runs;
+    /** the number of failures */
+    private long failures;
+
+    /**
+     * Create a fuzzer.
+     *
+     * @param solvePieces the most pieces on a board whose solvability is checked
+     * @param dir the directory LayeredSearch writes to
+     */
+    public DifferentialFuzzer(int solvePieces, Path dir) {
+        this.solvePieces = solvePieces;
+        this.table = new TranspositionTable(1 << 24);
+        this.solver = new SoltrChessSolver(null, new TranspositionTable(1 << 24));
+        this.frontier = new FrontierSearch(2);
+        this.dir = dir;
+        this.runs = new LinkedHashMap<>();
+        for (String name : Arrays.asList("rules", "legal", "batch", "successors", "solvable", "disk")) {
+            this.runs.put(name, 0L);
+        }
+    }
+
+    /**
+     * Draw a random board. The number of pieces is uniform from 1 to 16, so
+     * crowded boards with many captures are as likely as sparse ones.
+     *
+     * @param random where the randomness comes from
+     * @return the packed board
+     */
+    static long randomBoard(SplittableRandom random) {
+        int pieces = 1 + random.nextInt(PackedBoard.SQUARES);
+        int[] squares = new int[PackedBoard.SQUARES];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = i;
+        }
+        long board = 0;
+        for (int i = 0; i < pieces; i++) {
+            int pick = i + random.nextInt(squares.length - i);
+            int square = squares[pick];
+            squares[pick] = squares[i];
+            squares[i] = square;
+            long code = 1 + random.nextInt(SoltrChessModel.Piece.values().length - 1);
+            board |= code << (PackedBoard.BITS * square);
+        }
+        return board;
+    }
+
+    /**
+     * Write a packed board as its 16 squares in row order.
+     *
+     * @param board the packed board
+     * @return the squares as B, K, N, P, Q, R or -
+     */
+    static String squares(long board) {
+        StringBuilder text = new StringBuilder();
+        for (int square = 0; square < PackedBoard.SQUARES; square++) {
+            text.append(LETTERS[PackedBoard.code(board, square)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Describe a capture for a failure report.
+     *
+     * @param board the packed board
+     * @param from the square of the piece to move
+     * @param to the square of the piece to take
+     * @return the piece and the squares
+     */
+    private static String describe(long board, int from, int to) {
+        return PackedBoard.get(board, from) + " " + Move.toString(Move.encode(from / SoltrChessModel.COLS,
+                from % SoltrChessModel.COLS, to / SoltrChessModel.COLS, to % SoltrChessModel.COLS));
+    }
+
+    /**
+     * Get the capture mask of every square by asking the reference.
+     *
+     * @param model the board
+     * @return the masks, indexed by the square moved from
+     */
+    private static int[] referenceMasks(SoltrChessModel model) {
+        int[] masks = new int[PackedBoard.SQUARES];
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            for (int to = 0; to < PackedBoard.SQUARES; to++) {
+                if (ReferenceRules.isValidMove(model, from % SoltrChessModel.COLS, from / SoltrChessModel.COLS,
+                        to % SoltrChessModel.COLS, to / SoltrChessModel.COLS)) {
+                    masks[from] |= 1 << to;
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Compare the model's rules, which follow pieces.spec, with the reference.
+     *
+     * @param board the packed board
+     * @return the first difference, or null
+     */
+    private static String rules(long board) {
+        SoltrChessModel model = BoardSnapshot.ofPacked(board).toModel();
+        int[] masks = referenceMasks(model);
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            for (int to = 0; to < PackedBoard.SQUARES; to++) {
+                boolean expected = (masks[from] >>> to & 1) != 0;
+                if (model.isValidMove(from % SoltrChessModel.COLS, from / SoltrChessModel.COLS,
+                        to % SoltrChessModel.COLS, to / SoltrChessModel.COLS) != expected) {
+                    return describe(board, from, to) + ": reference " + expected + ", SoltrChessModel " + !expected;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare the legality of every capture.
+     *
+     * @param board the packed board
+     * @return the first difference, or null
+     */
+    private static String legal(long board) {
+        int[] masks = referenceMasks(BoardSnapshot.ofPacked(board).toModel());
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            for (int to = 0; to < PackedBoard.SQUARES; to++) {
+                boolean expected = (masks[from] >>> to & 1) != 0;
+                if (MoveTables.isValidMove(board, from, to) != expected) {
+                    return describe(board, from, to) + ": reference " + expected + ", MoveTables " + !expected;
+                }
+            }
+            if (MoveTables.captureMask(board, from) != masks[from]) {
+                return "capture mask of " + PackedBoard.get(board, from) + " on square " + from + ": reference "
+                        + Integer.toBinaryString(masks[from]) + ", MoveTables "
+                        + Integer.toBinaryString(MoveTables.captureMask(board, from));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare the batch kernels on a batch of boards.
+     *
+     * @param boards the packed boards
+     * @param count the number of boards
+     * @return the lane of the first difference, or -1
+     */
+    private static int batchLane(long[] boards, int count) {
+        int[][] masks = new int[count][];
+        for (int i = 0; i < count; i++) {
+            masks[i] = referenceMasks(BoardSnapshot.ofPacked(boards[i]).toModel());
+        }
+        byte[] valid = new byte[count];
+        int[] lanes = new int[count];
+        for (int from = 0; from < PackedBoard.SQUARES; from++) {
+            for (int to = 0; to < PackedBoard.SQUARES; to++) {
+                BatchMoveValidator.validate(boards, count, from, to, valid);
+                for (int i = 0; i < count; i++) {
+                    if (valid[i] != (masks[i][from] >>> to & 1)) {
+                        return i;
+                    }
+                }
+            }
+            BatchMoveValidator.captureMasks(boards, count, from, lanes);
+            for (int i = 0; i < count; i++) {
+                if (lanes[i] != masks[i][from]) {
+                    return i;
+                }
+            }
+        }
+        BatchMoveValidator.successorCounts(boards, count, lanes);
+        for (int i = 0; i < count; i++) {
+            int expected = 0;
+            for (int mask : masks[i]) {
+                expected += Integer.bitCount(mask);
+            }
+            if (lanes[i] != expected) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare the batch kernels on a single board.
+     *
+     * @param board the packed board
+     * @return a description of the difference, or null
+     */
+    private static String batch(long board) {
+        return batchLane(new long[] { board }, 1) < 0 ? null : "BatchMoveValidator differs from the reference";
+    }
+
+    /**
+     * Compare the successors of a board.
+     *
+     * @param board the packed board
+     * @return the first difference, or null
+     */
+    private static String successors(long board) {
+        SoltrChessConfig config = new SoltrChessConfig(BoardSnapshot.ofPacked(board));
+        int count = 0;
+        long[] expected = new long[PackedBoard.SQUARES * PackedBoard.SQUARES];
+        for (Configuration successor : config.getSuccessors()) {
+            SoltrChessConfig child = (SoltrChessConfig) successor;
+            long packed = PackedBoard.pack(child.getBoard());
+            if (child.getBoard().getPacked() != packed) {
+                return "successor " + squares(packed) + " keeps a stale packed board";
+            }
+            int move = child.getMove();
+            if (PackedBoard.makeMove(board, Move.from(move), Move.to(move)) != packed) {
+                return "successor " + squares(packed) + " does not follow from its move " + Move.toString(move);
+            }
+            expected[count++] = packed;
+        }
+        expected = Arrays.copyOf(expected, count);
+        long[] actual = new long[MoveTables.countCaptures(board)];
+        int made = 0;
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            int targets = MoveTables.captureMask(board, from);
+            while (targets != 0 && made < actual.length) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                actual[made++] = PackedBoard.makeMove(board, from, to);
+            }
+        }
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        if (!Arrays.equals(expected, actual)) {
+            return "reference has " + expected.length + " successors, MoveTables " + actual.length;
+        }
+        return null;
+    }
+
+    /**
+     * Replay a solution with the reference rules.
+     *
+     * @param board the packed starting board
+     * @param moves the moves of the solution
+     * @return what is wrong with the solution, or null if it solves the board
+     */
+    private static String replay(long board, int[] moves) {
+        SoltrChessModel model = BoardSnapshot.ofPacked(board).toModel();
+        for (int move : moves) {
+            if (!ReferenceRules.isValidMove(model, Move.fromCol(move), Move.fromRow(move), Move.toCol(move), Move.toRow(move))) {
+                return "move " + Move.toString(move) + " is not valid";
+            }
+            Move.apply(model, move);
+        }
+        return model.getNumPieces() == 1 ? null : "leaves " + model.getNumPieces() + " pieces";
+    }
+
+    /**
+     * Ask the reference whether a board can be solved.
+     *
+     * @param board the packed board
+     * @return whether or not the Backtracker finds a solution
+     */
+    private static boolean referenceSolvable(long board) {
+        return new Backtracker().solve(new SoltrChessConfig(BoardSnapshot.ofPacked(board))).isPresent();
+    }
+
+    /**
+     * Compare whether a board can be solved.
+     *
+     * @param board the packed board
+     * @return the first difference, or null
+     */
+    private String solvable(long board) {
+        boolean expected = referenceSolvable(board);
+        int pieces = PackedBoard.count(board);
+        if (PackedSearch.solvable(board, pieces) != expected) {
+            return "reference " + expected + ", PackedSearch " + !expected;
+        }
+        if (PackedSearch.solvable(board, pieces, this.table) != expected) {
+            return "reference " + expected + ", PackedSearch with a table " + !expected;
+        }
+        int[] moves = this.solver.solve(BoardSnapshot.ofPacked(board));
+        if ((moves != null) != expected) {
+            return "reference " + expected + ", SoltrChessSolver " + !expected;
+        }
+        String wrong = moves == null ? null : replay(board, moves);
+        return wrong == null ? null : "SoltrChessSolver solution " + wrong;
+    }
+
+    /**
+     * Compare the layered and parallel searches, which also have to agree
+     * with each other on the size of every layer.
+     *
+     * @param board the packed board
+     * @return the first difference, or null
+     * @throws Exception if a layer file cannot be written or the search is interrupted
+     */
+    private String disk(long board) throws Exception {
+        boolean expected = referenceSolvable(board);
+        int pieces = PackedBoard.count(board);
+        LayeredSearch layered = new LayeredSearch(this.dir, 1 << 12);
+        boolean layeredSolvable = layered.run(board);
+        for (int p = 1; p <= pieces; p++) {
+            Files.deleteIfExists(layered.layer(p));
+            Files.deleteIfExists(layered.solvableLayer(p));
+        }
+        if (layeredSolvable != expected) {
+            return "reference " + expected + ", LayeredSearch " + !expected;
+        }
+        this.frontier.run(board);
+        for (int layer = 0; layer < pieces; layer++) {
+            long size = layer < this.frontier.getLayers() ? this.frontier.getLayerSize(layer) : 0;
+            if (size != layered.getReachable(pieces - layer)) {
+                return "layer " + layer + ": LayeredSearch " + layered.getReachable(pieces - layer)
+                        + " boards, FrontierSearch " + size;
+            }
+        }
+        int[] moves = this.frontier.solution();
+        if ((moves != null) != expected) {
+            return "reference " + expected + ", FrontierSearch " + !expected;
+        }
+        String wrong = moves == null ? null : replay(board, moves);
+        return wrong == null ? null : "FrontierSearch solution " + wrong;
+    }
+
+    /**
+     * Take pieces off a failing board for as long as it still fails.
+     *
+     * @param check the check that failed
+     * @param board the packed board
+     * @return the smallest failing board found
+     * @throws Exception if an engine cannot run
+     */
+    private static long shrink(Check check, long board) throws Exception {
+        boolean smaller = true;
+        while (smaller) {
+            smaller = false;
+            for (int square = 0; square < PackedBoard.SQUARES && !smaller; square++) {
+                if (PackedBoard.code(board, square) == 0 || PackedBoard.count(board) == 1) {
+                    continue;
+                }
+                long without = board & ~(PackedBoard.SQUARE_MASK << (PackedBoard.BITS * square));
+                if (check.mismatch(without) != null) {
+                    board = without;
+                    smaller = true;
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Run a check on a board, and shrink and report it if it fails.
+     *
+     * @param name the name of the check
+     * @param check the check
+     * @param board the packed board
+     * @throws Exception if an engine cannot run
+     */
+    private void run(String name, Check check, long board) throws Exception {
+        this.runs.merge(name, 1L, Long::sum);
+        String mismatch = check.mismatch(board);
+        if (mismatch != null) {
+            report(name, check, board, mismatch);
+        }
+    }
+
+    /**
+     * Shrink and report a failure.
+     *
+     * @param name the name of the check
+     * @param check the check
+     * @param board the packed board
+     * @param mismatch the difference found
+     * @throws Exception if an engine cannot run
+     */
+    private void report(String name, Check check, long board, String mismatch) throws Exception {
+        if (++this.failures > MAX_REPORTS) {
+            return;
+        }
+        long shrunk = shrink(check, board);
+        System.out.println("FAIL " + name + " " + squares(board) + ": " + mismatch);
+        System.out.println("     shrunk to " + squares(shrunk) + ": " + check.mismatch(shrunk));
+    }
+
+    /**
+     * Check a number of random boards.
+     *
+     * @param seed the seed the boards are drawn with
+     * @param boards the number of boards
+     * @return the number of failures
+     * @throws Exception if an engine cannot run
+     */
+    public long fuzz(long seed, long boards) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] batch = new long[BATCH];
+        int lanes = 0;
+        for (long i = 0; i < boards; i++) {
+            long board = randomBoard(random);
+            run("rules", DifferentialFuzzer::rules, board);
+            run("legal", DifferentialFuzzer::legal, board);
+            run("successors", DifferentialFuzzer::successors, board);
+            if (PackedBoard.count(board) <= this.solvePieces) {
+                run("solvable", this::solvable, board);
+                if (i % DISK_EVERY == 0) {
+                    run("disk", this::disk, board);
+                }
+            }
+            batch[lanes++] = board;
+            if (lanes == BATCH || i == boards - 1) {
+                this.runs.merge("batch", (long) lanes, Long::sum);
+                int lane = batchLane(batch, lanes);
+                if (lane >= 0) {
+                    report("batch", DifferentialFuzzer::batch, batch[lane], "BatchMoveValidator differs from the reference");
+                }
+                lanes = 0;
+            }
+        }
+        return this.failures;
+    }
+
+    /**
+     * Stop the threads of the parallel search.
+     */
+    public void shutdown() {
+        this.frontier.shutdown();
+    }
+
+    /**
+     * Fuzz the engines.
+     *
+     * @param args [0] optional seed, random if not given, [1] optional
+     *             number of boards, [2] optional most pieces on a board whose
+     *             solvability is checked
+     * @throws Exception if an engine cannot run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 3) {
+            System.err.println("Usage: java DifferentialFuzzer [seed] [boards] [solve-pieces]");
+            System.exit(1);
+        }
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : new SplittableRandom().nextLong();
+        long boards = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int solvePieces = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Path dir = Files.createTempDirectory("soltrchess-fuzz");
+        DifferentialFuzzer fuzzer = new DifferentialFuzzer(solvePieces, dir);
+        long begin = System.nanoTime();
+        long failures;
+        try {
+            failures = fuzzer.fuzz(seed, boards);
+        } finally {
+            fuzzer.shutdown();
+            Files.deleteIfExists(dir);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("seed %d: %d boards in %.1f s%n", seed, boards, seconds);
+        for (Map.Entry<String, Long> entry : fuzzer.runs.entrySet()) {
+            System.out.printf("  %-10s %d%n", entry.getKey(), entry.getValue());
+        }
+        System.out.println(failures == 0 ? "no differences" : failures + " differences");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,322 @@
+package soltrchess.tools;
+
+import soltrchess.engine.FewestPieces;
+import soltrchess.engine.MoveTables;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rates how hard a puzzle is from statistics of its whole search tree,
+ * instead of by hand. Every board reachable from the puzzle is visited once,
+ * remembering for each the number of capture sequences from it that win and
+ * the chance that a player choosing captures at random wins from it.
+ *
+ * The score, from 0 to 100, goes up as that chance goes down, as fewer of
+ * the first moves lead to a win, and as more moves are needed. Boards with
+ * more solutions, more captures to choose from and dead ends only deep in
+ * the tree are easier for the same reasons, since all of that raises the
+ * chance of winning at random. The weights and label thresholds were picked
+ * so the computed labels agree with the hand-written ones in data/.
+ *
+ * A puzzle with no solution is graded by how close it comes: the fewest
+ * pieces any capture sequence leaves, found with FewestPieces.
+ *
+ * With -w the trailer line of each game file, such as "23. Intermediate",
+ * is rewritten with the computed label and score, keeping its number.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class DifficultyRater {
+    /** the labels given to scores, easiest first */
+    private static final String[] LABELS = { "Easy", "Intermediate", "Advanced", "Expert" };
+    /** the lowest score given each label */
+    private static final double[] THRESHOLDS = { 0, 25, 45, 65 };
+    /** the number at the start of a trailer line */
+    private static final Pattern NUMBER = Pattern.compile("^\\s*(\\d+)\\.");
+
+    /** what is remembered about a board already visited */
+    private static class Node {
+        /** the number of capture sequences from the board that win */
+        private final long solutions;
+        /** the chance of winning from the board by choosing captures at random */
+        private final double randomWin;
+
+        /**
+         * Constructor
+         *
+         * @param solutions the number of capture sequences that win
+         * @param randomWin the chance of winning by choosing at random
+         */
+        private Node(long solutions, double randomWin) {
+            this.solutions = solutions;
+            this.randomWin = randomWin;
+        }
+    }
+
+    /** the statistics of a puzzle and the rating worked out from them */
+    public static class Rating {
+        /** the number of pieces on the board */
+        public final int pieces;
+        /** the number of first moves */
+        public final int firstMoves;
+        /** the number of first moves that can still lead to a win */
+        public final int winningFirstMoves;
+        /** the number of capture sequences that win, capped at Long.MAX_VALUE */
+        public final long solutions;
+        /** the chance of winning by choosing captures at random */
+        public final double randomWin;
+        /** the number of distinct boards reachable */
+        public final long reachable;
+        /** the average number of captures from a reachable board that has any */
+        public final double branching;
+        /** the number of distinct dead ends, indexed by the number of moves made to reach them */
+        public final long[] deadEnds;
+        /** the fewest pieces any capture sequence leaves, 1 if there is a solution */
+        public final int fewestLeft;
+        /** the difficulty from 0 to 100, or NaN if there is no solution */
+        public final double score;
+        /** the label for the score */
+        public final String label;
+
+        /**
+         * Constructor
+         *
+         * @param rater the rater that visited the puzzle's boards
+         * @param start the packed starting board
+         */
+        private Rating(DifficultyRater rater, long start) {
+            this.pieces = PackedBoard.count(start);
+            Node root = rater.visit(start);
+            int first = 0;
+            int winning = 0;
+            for (long child : children(start)) {
+                first++;
+                if (rater.visit(child).solutions > 0) {
+                    winning++;
+                }
+            }
+            this.firstMoves = first;
+            this.winningFirstMoves = winning;
+            this.solutions = root.solutions;
+            this.randomWin = root.randomWin;
+            this.reachable = rater.nodes.size();
+            this.branching = rater.parents == 0 ? 0 : (double) rater.edges / rater.parents;
+            this.deadEnds = rater.deadEnds;
+
+            this.fewestLeft = this.solutions > 0 || this.pieces <= 1
+                    ? Math.min(this.pieces, 1) : FewestPieces.solve(start).pieces;
+            if (this.pieces <= 1) {
+                this.score = 0;
+                this.label = "already won";
+            } else if (this.solutions == 0) {
+                this.score = Double.NaN;
+                this.label = "Unsolvable";
+            } else {
+                double chance = -Math.log10(this.randomWin);
+                double firstMoveMisses = 1 - (double) winning / first;
+                double raw = 12 * chance + 20 * firstMoveMisses + 2 * (this.pieces - 1);
+                this.score = Math.min(100, Math.round(raw * 10) / 10.0);
+                String label = LABELS[0];
+                for (int i = 0; i < LABELS.length; i++) {
+                    if (this.score >= THRESHOLDS[i]) {
+                        label = LABELS[i];
+                    }
+                }
+                this.label = label;
+            }
+        }
+
+        /**
+         * Get the trailer line for a game file.
+         *
+         * @param number the puzzle's number, or null if it has none
+         * @return the trailer line
+         */
+        public String trailer(String number) {
+            String text;
+            if (this.pieces <= 1) {
+                text = this.label;
+            } else if (Double.isNaN(this.score)) {
+                text = this.label + " (" + this.fewestLeft + " left)";
+            } else {
+                text = this.label + " (" + this.score + ")";
+            }
+            return number == null ? text : number + ". " + text;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder dead = new StringBuilder();
+            for (int depth = 0; depth < this.deadEnds.length; depth++) {
+                if (this.deadEnds[depth] > 0) {
+                    dead.append(dead.length() == 0 ? "" : " ").append(depth).append(':').append(this.deadEnds[depth]);
+                }
+            }
+            return String.format("%-13s %5.1f  pieces %2d  first moves %d/%d  solutions %d  fewest left %d"
+                            + "  random win %.3g  boards %d  branching %.2f  dead ends [%s]",
+                    this.label, this.score, this.pieces, this.winningFirstMoves, this.firstMoves, this.solutions,
+                    this.fewestLeft, this.randomWin, this.reachable, this.branching, dead);
+        }
+    }
+
+    /** the pieces on the starting board */
+    private final int pieces;
+    /** every board visited so far */
+    private final HashMap<Long, Node> nodes;
+    /** the number of distinct dead ends, indexed by the number of moves made to reach them */
+    private final long[] deadEnds;
+    /** the number of distinct boards visited that have captures */
+    private long parents;
+    /** the number of captures from those boards */
+    private long edges;
+
+    /**
+     * Create a rater for one puzzle.
+     *
+     * @param pieces the number of pieces on the starting board
+     */
+    private DifficultyRater(int pieces) {
+        this.pieces = pieces;
+        this.nodes = new HashMap<>();
+        this.deadEnds = new long[Math.max(pieces, 1)];
+    }
+
+    /**
+     * Rate a puzzle.
+     *
+     * @param start the packed starting board
+     * @return the puzzle's statistics and rating
+     */
+    public static Rating rate(long start) {
+        return new Rating(new DifficultyRater(PackedBoard.count(start)), start);
+    }
+
+    /**
+     * List the boards one capture away from a board.
+     *
+     * @param board the packed board
+     * @return the packed children
+     */
+    private static List<Long> children(long board) {
+        List<Long> children = new ArrayList<>();
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            if (PackedBoard.code(board, from) == 0) {
+                continue;
+            }
+            int targets = MoveTables.captureMask(board, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                children.add(PackedBoard.makeMove(board, from, to));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Visit a board and every board below it, once each.
+     *
+     * @param board the packed board
+     * @return what is known about the board
+     */
+    private Node visit(long board) {
+        Node node = this.nodes.get(board);
+        if (node != null) {
+            return node;
+        }
+        int count = PackedBoard.count(board);
+        if (count == 1) {
+            node = new Node(1, 1);
+        } else {
+            List<Long> children = children(board);
+            if (children.isEmpty()) {
+                this.deadEnds[this.pieces - count]++;
+                node = new Node(0, 0);
+            } else {
+                this.parents++;
+                this.edges += children.size();
+                long solutions = 0;
+                double win = 0;
+                for (long child : children) {
+                    Node result = visit(child);
+                    solutions = solutions > Long.MAX_VALUE - result.solutions ? Long.MAX_VALUE : solutions + result.solutions;
+                    win += result.randomWin;
+                }
+                node = new Node(solutions, win / children.size());
+            }
+        }
+        this.nodes.put(board, node);
+        return node;
+    }
+
+    /**
+     * Replace the trailer line of a game file.
+     *
+     * @param file the game file
+     * @param rating the puzzle's rating
+     * @throws IOException if the file cannot be read or written
+     */
+    private static void rewrite(Path file, Rating rating) throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        while (lines.size() < SoltrChessModel.ROWS) {
+            lines.add("");
+        }
+        String number = null;
+        if (lines.size() > SoltrChessModel.ROWS) {
+            Matcher matcher = NUMBER.matcher(lines.get(SoltrChessModel.ROWS));
+            if (matcher.find()) {
+                number = matcher.group(1);
+            }
+            lines.subList(SoltrChessModel.ROWS, lines.size()).clear();
+        }
+        lines.add(rating.trailer(number));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, lines);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rate game files and print their statistics.
+     *
+     * @param args [-w] to rewrite each file's trailer line, then the game files
+     * @throws IOException if a file cannot be rewritten
+     */
+    public static void main(String[] args) throws IOException {
+        boolean write = args.length > 0 && args[0].equals("-w");
+        if (args.length == (write ? 1 : 0)) {
+            System.err.println("Usage: java DifficultyRater [-w] game-file...");
+            System.exit(1);
+        }
+        long begin = System.nanoTime();
+        for (int i = write ? 1 : 0; i < args.length; i++) {
+            SoltrChessModel board;
+            try {
+                board = new SoltrChessModel(args[i]);
+            } catch (FileNotFoundException e) {
+                System.out.println(args[i] + ": cannot be read");
+                continue;
+            }
+            if (board.getGameStatus() == SoltrChessModel.Status.INVALID_FILE) {
+                System.out.println(args[i] + ": invalid file");
+                continue;
+            }
+            Rating rating = rate(PackedBoard.pack(board));
+            System.out.println(args[i] + ": " + rating);
+            if (write) {
+                rewrite(Path.of(args[i]), rating);
+            }
+        }
+        System.out.printf("rated in %.1f s%n", (System.nanoTime() - begin) / 1e9);
+    }
+}
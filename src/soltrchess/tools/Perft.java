@@ -0,0 +1,182 @@
+package soltrchess.tools;
+
+import soltrchess.backtracking.Configuration;
+import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.engine.MoveTables;
+import soltrchess.model.BoardSnapshot;
+import soltrchess.model.Move;
+import soltrchess.model.PackedBoard;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.FileNotFoundException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts every capture sequence of a given length from a board, in the
+ * style of chess "perft". The count is broken down by first move ("divide")
+ * and reported with the number of sequences counted per second.
+ *
+ * The reference engine walks SoltrChessConfig.getSuccessors(), which uses
+ * SoltrChessModel.isValidMove(). The packed engine uses MoveTables on
+ * packed boards. Running both compares their counts move by move, so any
+ * difference in move generation shows up straight away.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+public class Perft {
+    /** the engines that can be counted with */
+    enum Engine { reference, packed, both }
+
+    /**
+     * Count the sequences of a given length using the reference engine.
+     *
+     * @param config the starting configuration
+     * @param depth the number of captures in each sequence
+     * @return the number of sequences
+     */
+    public static long reference(Configuration config, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (Configuration child : config.getSuccessors()) {
+            nodes += depth == 1 ? 1 : reference(child, depth - 1);
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the sequences of a given length using the packed engine.
+     *
+     * @param packed the starting board
+     * @param depth the number of captures in each sequence
+     * @return the number of sequences
+     */
+    public static long packed(long packed, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (depth == 1) {
+            return MoveTables.countCaptures(packed);
+        }
+        long nodes = 0;
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            int targets = MoveTables.captureMask(packed, from);
+            while (targets != 0) {
+                int to = Integer.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                nodes += packed(PackedBoard.makeMove(packed, from, to), depth - 1);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Divide the reference count by first move.
+     *
+     * @param board the starting board
+     * @param depth the number of captures in each sequence
+     * @return the count below each first move, in move generation order
+     */
+    public static Map<Integer, Long> divideReference(SoltrChessModel board, int depth) {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (Configuration child : new SoltrChessConfig(BoardSnapshot.of(board)).getSuccessors()) {
+            counts.put(((SoltrChessConfig) child).getMove(), reference(child, depth - 1));
+        }
+        return counts;
+    }
+
+    /**
+     * Divide the packed count by first move.
+     *
+     * @param board the starting board
+     * @param depth the number of captures in each sequence
+     * @return the count below each first move, in move generation order
+     */
+    public static Map<Integer, Long> dividePacked(SoltrChessModel board, int depth) {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        long packed = PackedBoard.pack(board);
+        for (int from = 0; from < MoveTables.SQUARES; from++) {
+            for (int to = 0; to < MoveTables.SQUARES; to++) {
+                if (MoveTables.isValidMove(packed, from, to)) {
+                    int move = Move.encode(from / SoltrChessModel.COLS, from % SoltrChessModel.COLS,
+                            to / SoltrChessModel.COLS, to % SoltrChessModel.COLS);
+                    counts.put(move, packed(PackedBoard.makeMove(packed, from, to), depth - 1));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Run one engine and print its divide.
+     *
+     * @param name the engine's name
+     * @param board the starting board
+     * @param depth the number of captures in each sequence
+     * @param reference whether to use the reference engine
+     * @return the count below each first move
+     */
+    private static Map<Integer, Long> run(String name, SoltrChessModel board, int depth, boolean reference) {
+        long start = System.nanoTime();
+        Map<Integer, Long> counts = reference ? divideReference(board, depth) : dividePacked(board, depth);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = 0;
+        System.out.println(name + ":");
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            System.out.println("  " + Move.toString(entry.getKey()) + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        System.out.printf("  total %d in %.3fs (%.0f nodes/s)%n", total, seconds, total / Math.max(seconds, 1e-9));
+        return counts;
+    }
+
+    /**
+     * Run perft.
+     *
+     * @param args [0] the game file, [1] the depth, [2] optionally the engine:
+     *             reference, packed or both (the default)
+     * @throws FileNotFoundException if the game file cannot be read
+     */
+    public static void main(String[] args) throws FileNotFoundException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java Perft game-file depth [reference|packed|both]");
+            System.exit(1);
+        }
+        SoltrChessModel board = new SoltrChessModel(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        Engine engine = args.length == 3 ? Engine.valueOf(args[2]) : Engine.both;
+        if (depth < 1) {
+            System.out.println("total 1");
+            return;
+        }
+
+        Map<Integer, Long> reference = null;
+        Map<Integer, Long> packed = null;
+        if (engine != Engine.packed) {
+            reference = run("reference", board, depth, true);
+        }
+        if (engine != Engine.reference) {
+            packed = run("packed", board, depth, false);
+        }
+        if (reference != null && packed != null) {
+            if (reference.equals(packed)) {
+                System.out.println("engines agree");
+            } else {
+                System.out.println("ENGINES DISAGREE");
+                for (int move : reference.keySet()) {
+                    if (!reference.get(move).equals(packed.get(move))) {
+                        System.out.println("  " + Move.toString(move) + ": reference " + reference.get(move) + ", packed " + packed.get(move));
+                    }
+                }
+                for (int move : packed.keySet()) {
+                    if (!reference.containsKey(move)) {
+                        System.out.println("  " + Move.toString(move) + ": reference none, packed " + packed.get(move));
+                    }
+                }
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package soltrchess.tools;
+
+import soltrchess.model.SoltrChessModel;
+
+/**
+ * The rules of the game as SoltrChessModel.isValidMove() had them before
+ * piece movement was moved into pieces.spec: a switch with an arm for each
+ * piece. They are kept here, frozen, as the DifferentialFuzzer's oracle, so
+ * the spec, the code that reads it and every engine built on it are all
+ * checked against rules that none of them share code with.
+ *
+ * Do not change these rules to follow a change to pieces.spec. Any change to
+ * how the standard pieces move is meant to show up as a difference.
+ *
+ * @author Jesse Burdick-Pless jb4411@g.rit.edu
+ */
+final class ReferenceRules {
+    /**
+     * Reference rules only hold static helpers.
+     */
+    private ReferenceRules() {
+    }
+
+    /**
+     * Check whether or not there will be a collision when a piece moves
+     *
+     * @param board the board
+     * @param selectedCol the column of the selected piece to move
+     * @param selectedRow the row of the selected piece to move
+     * @param moveCol the column of the space to move to
+     * @param moveRow the row of the space to move to
+     * @param diagonal whether or not to check the diagonal
+     * @return whether or not there is a collision
+     */
+    private static boolean hasCollision(SoltrChessModel board, int selectedCol, int selectedRow, int moveCol, int moveRow, boolean diagonal) {
+        int currentCol = selectedCol;
+        int currentRow = selectedRow;
+        if (diagonal) {
+            if (moveRow - selectedRow < 0) { //moving up
+                if (moveCol - selectedCol < 0) { //moving up-left
+                    currentCol--;
+                    currentRow--;
+                    while (currentCol > moveCol && currentRow > moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol--;
+                        currentRow--;
+                    }
+                    return true;
+                } else { //moving up-right
+                    currentCol++;
+                    currentRow--;
+                    while (currentCol < moveCol && currentRow > moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol++;
+                        currentRow--;
+                    }
+                    return true;
+                }
+            } else { //moving down
+                if (moveCol - selectedCol < 0) { //moving down-left
+                    currentCol--;
+                    currentRow++;
+                    while (currentCol > moveCol && currentRow < moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol--;
+                        currentRow++;
+                    }
+                    return true;
+                } else { //moving down-right
+                    currentCol++;
+                    currentRow++;
+                    while (currentCol < moveCol && currentRow < moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol++;
+                        currentRow++;
+                    }
+                    return true;
+                }
+            }
+        } else {
+            if (moveCol != selectedCol) { //moving left or right
+                if (selectedCol > moveCol) { //moving left
+                    currentCol--;
+                    while (currentCol > moveCol) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol--;
+                    }
+                    return true;
+                } else { //moving right
+                    currentCol++;
+                    while (currentCol < moveCol) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentCol++;
+                    }
+                    return true;
+                }
+            } else { //moving up or down
+                if (selectedRow > moveRow) { //moving up
+                    currentRow--;
+                    while (currentRow > moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentRow--;
+                    }
+                    return true;
+                } else { //moving down
+                    currentRow++;
+                    while (currentRow < moveRow) {
+                        if (board.getContents(currentRow, currentCol) != SoltrChessModel.Piece.NONE) {
+                            return false;
+                        }
+                        currentRow++;
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Is this a valid move?
+     *
+     * @param board the board
+     * @param selectedCol the column of the selected piece to move
+     * @param selectedRow the row of the selected piece to move
+     * @param moveCol the column of the space to move to
+     * @param moveRow the row of the space to move to
+     * @return whether or not the move is valid
+     */
+    static boolean isValidMove(SoltrChessModel board, int selectedCol, int selectedRow, int moveCol, int moveRow) {
+        if (selectedCol >= SoltrChessModel.COLS || moveCol >= SoltrChessModel.COLS || selectedCol < 0 || moveCol < 0) {
+            return false;
+        } else if (selectedRow >= SoltrChessModel.ROWS || moveRow >= SoltrChessModel.ROWS || selectedRow < 0 || moveRow < 0) {
+            return false;
+        } else if (selectedCol == moveCol && selectedRow == moveRow) {
+            return false;
+        } else if (board.getContents(moveRow, moveCol).equals(SoltrChessModel.Piece.NONE)) {
+            return false;
+        }
+        SoltrChessModel.Piece next = board.getContents(selectedRow, selectedCol);
+        switch (next) {
+            case BISHOP -> {
+                if (selectedCol == moveCol || selectedRow == moveRow) {
+                    return false;
+                } else {
+                    if (Math.abs(moveRow - selectedRow) == Math.abs(moveCol - selectedCol)) {
+                        return hasCollision(board, selectedCol, selectedRow, moveCol, moveRow, true);
+                    } else {
+                        return false;
+                    }
+                }
+            }
+            case KING -> {
+                return Math.abs(selectedCol - moveCol) <= 1 && Math.abs(selectedRow - moveRow) <= 1;
+            }
+            case KNIGHT -> {
+                if (selectedCol == moveCol || selectedRow == moveRow) {
+                    return false;
+                } else {
+                    if (Math.abs(moveRow - selectedRow) == 1) {
+                        if (Math.abs(moveCol - selectedCol) == 2) {
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    } else if (Math.abs(moveCol - selectedCol) == 1) {
+                        if (Math.abs(moveRow - selectedRow) == 2) {
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    }
+                }
+            }
+            case PAWN -> {
+                if (selectedCol == moveCol || selectedRow == moveRow) {
+                    return false;
+                } else {
+                    return selectedRow - moveRow == 1 && Math.abs(moveCol - selectedCol) == 1;
+                }
+            }
+            case QUEEN -> {
+                if (selectedCol == moveCol || selectedRow == moveRow) {
+                    return hasCollision(board, selectedCol, selectedRow, moveCol, moveRow, false);
+                } else {
+                    if (Math.abs(moveRow - selectedRow) == Math.abs(moveCol - selectedCol)) {
+                        return hasCollision(board, selectedCol, selectedRow, moveCol, moveRow, true);
+                    } else {
+                        return false;
+                    }
+                }
+            }
+            case ROOK -> {
+                if (moveCol != selectedCol) {
+                    if (moveRow == selectedRow) {
+                        return hasCollision(board, selectedCol, selectedRow, moveCol, moveRow, false);
+                    } else {
+                        return false;
+                    }
+                } else {
+                    return hasCollision(board, selectedCol, selectedRow, moveCol, moveRow, false);
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return false;
+    }
+}